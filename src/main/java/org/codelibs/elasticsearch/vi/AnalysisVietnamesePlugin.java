@@ -14,29 +14,155 @@
 
 package org.codelibs.elasticsearch.vi;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.codelibs.elasticsearch.vi.action.TransportVietnameseSegmentAction;
+import org.codelibs.elasticsearch.vi.action.TransportVietnameseStatsAction;
+import org.codelibs.elasticsearch.vi.action.VietnameseSegmentAction;
+import org.codelibs.elasticsearch.vi.action.VietnameseStatsAction;
+import org.codelibs.elasticsearch.vi.analysis.SegmentationCache;
 import org.codelibs.elasticsearch.vi.analysis.VietnameseAnalyzerProvider;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseBreakerService;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseFoldingFilterFactory;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseModelLoader;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseModelRegistry;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseNormalizeCharFilterFactory;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseSlowLog;
 import org.codelibs.elasticsearch.vi.analysis.VietnameseTokenizerFactory;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseUserDictionary;
+import org.codelibs.elasticsearch.vi.rest.RestVietnameseSegmentAction;
+import org.codelibs.elasticsearch.vi.rest.RestVietnameseStatsAction;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.component.LifecycleComponent;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.analysis.AnalyzerProvider;
+import org.elasticsearch.index.analysis.CharFilterFactory;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
 import org.elasticsearch.index.analysis.TokenizerFactory;
 import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
 /**
  * @author duydo
  */
-public class AnalysisVietnamesePlugin extends Plugin implements AnalysisPlugin {
+public class AnalysisVietnamesePlugin extends Plugin implements AnalysisPlugin, ActionPlugin {
+    private final VietnameseUserDictionary userDictionary;
+    private final VietnameseModelRegistry modelRegistry;
+
+    public AnalysisVietnamesePlugin() {
+        this(Settings.EMPTY);
+    }
+
+    public AnalysisVietnamesePlugin(final Settings settings) {
+        final String userDictionaryFile = VietnameseUserDictionary.USER_DICTIONARY_SETTING.get(settings);
+        userDictionary = new VietnameseUserDictionary(
+                userDictionaryFile.isEmpty() ? null : new Environment(settings).configFile().resolve(userDictionaryFile));
+        modelRegistry = new VietnameseModelRegistry(settings, userDictionary);
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        final List<Setting<?>> settings = new ArrayList<>(Arrays.asList(VietnameseUserDictionary.USER_DICTIONARY_SETTING,
+                SegmentationCache.MAX_ENTRIES_SETTING, SegmentationCache.MAX_SIZE_SETTING, VietnameseBreakerService.BREAKER_LIMIT_SETTING));
+        settings.addAll(VietnameseSlowLog.SETTINGS);
+        settings.add(VietnameseModelLoader.PRELOAD_SETTING);
+        settings.add(VietnameseModelLoader.WARMUP_PATH_SETTING);
+        settings.add(VietnameseModelLoader.WARMUP_MAX_CHARS_SETTING);
+        settings.add(VietnameseModelRegistry.LEXER_STATS_SETTING);
+        return settings;
+    }
+
+    @Override
+    public Collection<Object> createComponents(final Client client, final ClusterService clusterService, final ThreadPool threadPool,
+            final ResourceWatcherService resourceWatcherService, final ScriptService scriptService,
+            final NamedXContentRegistry xContentRegistry) {
+        userDictionary.watch(resourceWatcherService);
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(VietnameseModelRegistry.LEXER_STATS_SETTING,
+                modelRegistry::setLexerStats);
+        // bound for injection into VietnameseBreakerService and the actions
+        return Collections.singletonList(modelRegistry);
+    }
+
+    @Override
+    public List<ExecutorBuilder<?>> getExecutorBuilders(final Settings settings) {
+        // thread_pool.vi_segment.size and thread_pool.vi_segment.queue_size
+        return Collections.singletonList(new FixedExecutorBuilder(settings, VietnameseSegmentAction.THREAD_POOL_NAME,
+                EsExecutors.boundedNumberOfProcessors(settings), 100, "thread_pool." + VietnameseSegmentAction.THREAD_POOL_NAME));
+    }
+
+    @Override
+    public Collection<Class<? extends LifecycleComponent>> getGuiceServiceClasses() {
+        return Arrays.asList(VietnameseBreakerService.class, VietnameseModelLoader.class);
+    }
+
+    @Override
+    public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+        return Arrays.asList(new ActionHandler<>(VietnameseStatsAction.INSTANCE, TransportVietnameseStatsAction.class),
+                new ActionHandler<>(VietnameseSegmentAction.INSTANCE, TransportVietnameseSegmentAction.class));
+    }
+
+    @Override
+    public List<RestHandler> getRestHandlers(final Settings settings, final RestController restController,
+            final ClusterSettings clusterSettings, final IndexScopedSettings indexScopedSettings, final SettingsFilter settingsFilter,
+            final IndexNameExpressionResolver indexNameExpressionResolver, final Supplier<DiscoveryNodes> nodesInCluster) {
+        return Arrays.asList(new RestVietnameseStatsAction(settings, restController),
+                new RestVietnameseSegmentAction(settings, restController));
+    }
+
     @Override
     public Map<String, AnalysisModule.AnalysisProvider<TokenizerFactory>> getTokenizers() {
-        return Collections.singletonMap("vi_tokenizer", VietnameseTokenizerFactory::new);
+        return Collections.singletonMap("vi_tokenizer",
+                (indexSettings, environment, name, settings) -> new VietnameseTokenizerFactory(indexSettings, environment, name,
+                        settings, modelRegistry));
+    }
+
+    @Override
+    public Map<String, AnalysisModule.AnalysisProvider<CharFilterFactory>> getCharFilters() {
+        return Collections.singletonMap("vi_normalize", VietnameseNormalizeCharFilterFactory::new);
+    }
+
+    @Override
+    public Map<String, AnalysisModule.AnalysisProvider<TokenFilterFactory>> getTokenFilters() {
+        return Collections.singletonMap("vi_folding", VietnameseFoldingFilterFactory::new);
     }
 
     @Override
     public Map<String, AnalysisModule.AnalysisProvider<AnalyzerProvider<? extends Analyzer>>> getAnalyzers() {
-        return Collections.singletonMap("vi_analyzer", VietnameseAnalyzerProvider::new);
+        return Collections.singletonMap("vi_analyzer",
+                (indexSettings, environment, name, settings) -> new VietnameseAnalyzerProvider(indexSettings, environment, name,
+                        settings, modelRegistry));
+    }
+
+    @Override
+    public void close() {
+        modelRegistry.close();
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.action;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.codelibs.elasticsearch.vi.analysis.SegmentationMode;
+import org.codelibs.elasticsearch.vi.analysis.TaggedWordTokenizer;
+import org.codelibs.elasticsearch.vi.analysis.Token;
+import org.codelibs.elasticsearch.vi.analysis.TokenizerOptions;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseModelRegistry;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseTokenizer;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+/**
+ * Segments the texts of a request on the node receiving it. The texts are
+ * split into as many slices as the <tt>vi_segment</tt> thread pool has
+ * threads, each slice being segmented by one task with its own tokenizer. A
+ * request rejected by the bounded queue of the pool fails as a whole.
+ */
+public class TransportVietnameseSegmentAction extends HandledTransportAction<VietnameseSegmentRequest, VietnameseSegmentResponse> {
+
+    private final VietnameseModelRegistry modelRegistry;
+
+    @Inject
+    public TransportVietnameseSegmentAction(final Settings settings, final ThreadPool threadPool,
+            final TransportService transportService, final ActionFilters actionFilters,
+            final IndexNameExpressionResolver indexNameExpressionResolver, final VietnameseModelRegistry modelRegistry) {
+        super(settings, VietnameseSegmentAction.NAME, threadPool, transportService, actionFilters, indexNameExpressionResolver,
+                VietnameseSegmentRequest::new);
+        this.modelRegistry = modelRegistry;
+    }
+
+    @Override
+    protected void doExecute(final VietnameseSegmentRequest request, final ActionListener<VietnameseSegmentResponse> listener) {
+        final long startTime = System.nanoTime();
+        final List<String> texts = request.texts();
+        final int size = texts.size();
+        final int slices = Math.max(1, Math.min(size, threadPool.info(VietnameseSegmentAction.THREAD_POOL_NAME).getMax()));
+        final Token[][] tokens = new Token[size][];
+        final CountDown countDown = new CountDown(slices);
+        for (int slice = 0; slice < slices; slice++) {
+            final int from = (int) ((long) size * slice / slices);
+            final int to = (int) ((long) size * (slice + 1) / slices);
+            threadPool.executor(VietnameseSegmentAction.THREAD_POOL_NAME).execute(new AbstractRunnable() {
+                @Override
+                protected void doRun() throws Exception {
+                    segment(texts, from, to, request.mode(), tokens);
+                    if (countDown.countDown()) {
+                        listener.onResponse(new VietnameseSegmentResponse(tokens, System.nanoTime() - startTime));
+                    }
+                }
+
+                @Override
+                public void onFailure(final Exception e) {
+                    if (countDown.fastForward()) {
+                        listener.onFailure(e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Segments the texts <tt>[from, to)</tt>.
+     */
+    private void segment(final List<String> texts, final int from, final int to, final SegmentationMode mode, final Token[][] tokens)
+            throws IOException {
+        final TaggedWordTokenizer taggedWordTokenizer = modelRegistry.preload(TaggedWordTokenizer.DEFAULT_MODEL);
+        if (taggedWordTokenizer == null) {
+            throw new IllegalStateException("The Vietnamese models are closed");
+        }
+        final VietnameseTokenizer tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.builder().mode(mode).build());
+        final CharTermAttribute termAtt = tokenizer.addAttribute(CharTermAttribute.class);
+        final OffsetAttribute offsetAtt = tokenizer.addAttribute(OffsetAttribute.class);
+        final TypeAttribute typeAtt = tokenizer.addAttribute(TypeAttribute.class);
+        final PositionIncrementAttribute posIncrAtt = tokenizer.addAttribute(PositionIncrementAttribute.class);
+        final List<Token> textTokens = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            tokenizer.setReader(new StringReader(texts.get(i)));
+            tokenizer.reset();
+            int position = -1;
+            while (tokenizer.incrementToken()) {
+                position += posIncrAtt.getPositionIncrement();
+                final Token token = new Token(typeAtt.type(), termAtt.toString());
+                token.setStartOffset(offsetAtt.startOffset());
+                token.setEndOffset(offsetAtt.endOffset());
+                token.setPos(position);
+                textTokens.add(token);
+            }
+            tokenizer.end();
+            tokenizer.close();
+            tokens[i] = textTokens.toArray(new Token[textTokens.size()]);
+            textTokens.clear();
+        }
+    }
+}
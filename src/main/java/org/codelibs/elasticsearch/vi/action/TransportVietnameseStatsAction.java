@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.action;
+
+import java.util.List;
+
+import org.codelibs.elasticsearch.vi.analysis.VietnameseModelRegistry;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class TransportVietnameseStatsAction extends TransportNodesAction<VietnameseStatsRequest, VietnameseStatsResponse,
+        TransportVietnameseStatsAction.VietnameseNodeStatsRequest, VietnameseNodeStats> {
+
+    private final VietnameseModelRegistry modelRegistry;
+
+    @Inject
+    public TransportVietnameseStatsAction(final Settings settings, final ThreadPool threadPool, final ClusterService clusterService,
+            final TransportService transportService, final ActionFilters actionFilters,
+            final IndexNameExpressionResolver indexNameExpressionResolver, final VietnameseModelRegistry modelRegistry) {
+        super(settings, VietnameseStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                indexNameExpressionResolver, VietnameseStatsRequest::new, VietnameseNodeStatsRequest::new, ThreadPool.Names.MANAGEMENT,
+                VietnameseNodeStats.class);
+        this.modelRegistry = modelRegistry;
+    }
+
+    @Override
+    protected VietnameseStatsResponse newResponse(final VietnameseStatsRequest request, final List<VietnameseNodeStats> nodes,
+            final List<FailedNodeException> failures) {
+        return new VietnameseStatsResponse(clusterService.getClusterName(), nodes, failures);
+    }
+
+    @Override
+    protected VietnameseNodeStatsRequest newNodeRequest(final String nodeId, final VietnameseStatsRequest request) {
+        return new VietnameseNodeStatsRequest(nodeId);
+    }
+
+    @Override
+    protected VietnameseNodeStats newNodeResponse() {
+        return new VietnameseNodeStats();
+    }
+
+    @Override
+    protected VietnameseNodeStats nodeOperation(final VietnameseNodeStatsRequest request) {
+        return new VietnameseNodeStats(clusterService.localNode(), modelRegistry);
+    }
+
+    public static class VietnameseNodeStatsRequest extends BaseNodeRequest {
+
+        public VietnameseNodeStatsRequest() {
+        }
+
+        VietnameseNodeStatsRequest(final String nodeId) {
+            super(nodeId);
+        }
+    }
+}
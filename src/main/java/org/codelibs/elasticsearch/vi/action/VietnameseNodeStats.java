@@ -0,0 +1,366 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.action;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.elasticsearch.vi.analysis.SegmentationCache;
+import org.codelibs.elasticsearch.vi.analysis.TaggedWordTokenizer;
+import org.codelibs.elasticsearch.vi.analysis.TokenizerMetrics;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseModelRegistry;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.LexerStats;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * The tokenization statistics of a node: the work done since the node
+ * started, and the models and segmentation caches currently loaded.
+ */
+public class VietnameseNodeStats extends BaseNodeResponse implements ToXContent {
+
+    private long documents;
+    private long characters;
+    private long tokens;
+    private long chunks;
+    private long phrases;
+    private long hybridPhrases;
+    private long fallbackSpans;
+    private long fallbackSyllables;
+    private long longPhrases;
+    private long latePhrases;
+    private long cappedPhrases;
+    private long lexingNanos;
+    private long segmentationNanos;
+    private long resolutionNanos;
+    private long mergingNanos;
+    private long[] chunkLatency;
+    private long[] phraseSyllables;
+    private long modelCount;
+    private long modelSizeInBytes;
+    private long cacheCount;
+    private long cacheSizeInBytes;
+    private long cacheHits;
+    private long cacheMisses;
+    private long cacheEvictions;
+    private long cacheRejections;
+    private String[] lexerRules;
+    private long[] lexerAttempts;
+    private long[] lexerMatches;
+    private long[] lexerWins;
+    private long[] lexerNanos;
+
+    VietnameseNodeStats() {
+    }
+
+    /**
+     * Takes the statistics of a node.
+     *
+     * @param node the node
+     * @param modelRegistry the model registry of the node
+     */
+    public VietnameseNodeStats(final DiscoveryNode node, final VietnameseModelRegistry modelRegistry) {
+        super(node);
+        final TokenizerMetrics metrics = modelRegistry.getMetrics();
+        documents = metrics.getDocuments();
+        characters = metrics.getCharacters();
+        tokens = metrics.getTokens();
+        chunks = metrics.getChunks();
+        phrases = metrics.getPhrases();
+        hybridPhrases = metrics.getHybridPhrases();
+        fallbackSpans = metrics.getFallbackSpans();
+        fallbackSyllables = metrics.getFallbackSyllables();
+        longPhrases = metrics.getLongPhrases();
+        latePhrases = metrics.getLatePhrases();
+        cappedPhrases = metrics.getCappedPhrases();
+        lexingNanos = metrics.getLexingNanos();
+        segmentationNanos = metrics.getSegmentationNanos();
+        resolutionNanos = metrics.getResolutionNanos();
+        mergingNanos = metrics.getMergingNanos();
+        chunkLatency = metrics.getChunkLatency();
+        phraseSyllables = metrics.getPhraseSyllables();
+        for (final TaggedWordTokenizer tokenizer : modelRegistry.getModels().values()) {
+            modelCount++;
+            final SegmentationCache cache = tokenizer.getSegmentationCache();
+            if (cache != null) {
+                final Cache.CacheStats stats = cache.stats();
+                cacheCount += cache.count();
+                cacheSizeInBytes += cache.ramBytesUsed();
+                cacheHits += stats.getHits();
+                cacheMisses += stats.getMisses();
+                cacheEvictions += stats.getEvictions();
+                cacheRejections += cache.rejections();
+            }
+        }
+        modelSizeInBytes = Math.max(0, modelRegistry.ramBytesUsed() - cacheSizeInBytes);
+
+        // the work of the lexer rules, by rule name over the models
+        final Map<String, long[]> rules = new LinkedHashMap<>();
+        for (final TaggedWordTokenizer tokenizer : modelRegistry.getModels().values()) {
+            final LexerStats stats = tokenizer.getLexer().getStats();
+            if (stats == null) {
+                continue;
+            }
+            for (int i = 0; i < stats.getRules().length; i++) {
+                final long[] counters = rules.computeIfAbsent(stats.getRules()[i].getName(), name -> new long[4]);
+                counters[0] += stats.getAttempts(i);
+                counters[1] += stats.getMatches(i);
+                counters[2] += stats.getWins(i);
+                counters[3] += stats.getNanos(i);
+            }
+        }
+        lexerRules = rules.keySet().toArray(new String[rules.size()]);
+        lexerAttempts = new long[lexerRules.length];
+        lexerMatches = new long[lexerRules.length];
+        lexerWins = new long[lexerRules.length];
+        lexerNanos = new long[lexerRules.length];
+        for (int i = 0; i < lexerRules.length; i++) {
+            final long[] counters = rules.get(lexerRules[i]);
+            lexerAttempts[i] = counters[0];
+            lexerMatches[i] = counters[1];
+            lexerWins[i] = counters[2];
+            lexerNanos[i] = counters[3];
+        }
+    }
+
+    static VietnameseNodeStats readNodeStats(final StreamInput in) throws IOException {
+        final VietnameseNodeStats nodeStats = new VietnameseNodeStats();
+        nodeStats.readFrom(in);
+        return nodeStats;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    public long getCharacters() {
+        return characters;
+    }
+
+    public long getTokens() {
+        return tokens;
+    }
+
+    public long getPhrases() {
+        return phrases;
+    }
+
+    public long getHybridPhrases() {
+        return hybridPhrases;
+    }
+
+    public long getFallbackSpans() {
+        return fallbackSpans;
+    }
+
+    public long getLongPhrases() {
+        return longPhrases;
+    }
+
+    public long getLatePhrases() {
+        return latePhrases;
+    }
+
+    public long getCappedPhrases() {
+        return cappedPhrases;
+    }
+
+    public long getModelCount() {
+        return modelCount;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * @return the names of the lexer rules recorded, none if the lexer
+     *         statistics are disabled.
+     */
+    public String[] getLexerRules() {
+        return lexerRules;
+    }
+
+    public long[] getLexerWins() {
+        return lexerWins;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        documents = in.readVLong();
+        characters = in.readVLong();
+        tokens = in.readVLong();
+        chunks = in.readVLong();
+        phrases = in.readVLong();
+        hybridPhrases = in.readVLong();
+        fallbackSpans = in.readVLong();
+        fallbackSyllables = in.readVLong();
+        longPhrases = in.readVLong();
+        latePhrases = in.readVLong();
+        cappedPhrases = in.readVLong();
+        lexingNanos = in.readVLong();
+        segmentationNanos = in.readVLong();
+        resolutionNanos = in.readVLong();
+        mergingNanos = in.readVLong();
+        chunkLatency = in.readVLongArray();
+        phraseSyllables = in.readVLongArray();
+        modelCount = in.readVLong();
+        modelSizeInBytes = in.readVLong();
+        cacheCount = in.readVLong();
+        cacheSizeInBytes = in.readVLong();
+        cacheHits = in.readVLong();
+        cacheMisses = in.readVLong();
+        cacheEvictions = in.readVLong();
+        cacheRejections = in.readVLong();
+        lexerRules = in.readStringArray();
+        lexerAttempts = in.readVLongArray();
+        lexerMatches = in.readVLongArray();
+        lexerWins = in.readVLongArray();
+        lexerNanos = in.readVLongArray();
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVLong(documents);
+        out.writeVLong(characters);
+        out.writeVLong(tokens);
+        out.writeVLong(chunks);
+        out.writeVLong(phrases);
+        out.writeVLong(hybridPhrases);
+        out.writeVLong(fallbackSpans);
+        out.writeVLong(fallbackSyllables);
+        out.writeVLong(longPhrases);
+        out.writeVLong(latePhrases);
+        out.writeVLong(cappedPhrases);
+        out.writeVLong(lexingNanos);
+        out.writeVLong(segmentationNanos);
+        out.writeVLong(resolutionNanos);
+        out.writeVLong(mergingNanos);
+        out.writeVLongArray(chunkLatency);
+        out.writeVLongArray(phraseSyllables);
+        out.writeVLong(modelCount);
+        out.writeVLong(modelSizeInBytes);
+        out.writeVLong(cacheCount);
+        out.writeVLong(cacheSizeInBytes);
+        out.writeVLong(cacheHits);
+        out.writeVLong(cacheMisses);
+        out.writeVLong(cacheEvictions);
+        out.writeVLong(cacheRejections);
+        out.writeStringArray(lexerRules);
+        out.writeVLongArray(lexerAttempts);
+        out.writeVLongArray(lexerMatches);
+        out.writeVLongArray(lexerWins);
+        out.writeVLongArray(lexerNanos);
+    }
+
+    @Override
+    public XContentBuilder toXContent(final XContentBuilder builder, final Params params) throws IOException {
+        builder.field("name", getNode().getName());
+        builder.field("documents", documents);
+        builder.field("characters", characters);
+        builder.field("tokens", tokens);
+        builder.field("chunks", chunks);
+        builder.field("phrases", phrases);
+
+        // the spans of the hybrid mode segmented on their lattice
+        builder.startObject("hybrid");
+        builder.field("phrases", hybridPhrases);
+        builder.field("fallback_spans", fallbackSpans);
+        builder.field("fallback_syllables", fallbackSyllables);
+        builder.endObject();
+
+        // the phrases over the budget of the tokenizers
+        builder.startObject("budget");
+        builder.field("long_phrases", longPhrases);
+        builder.field("late_phrases", latePhrases);
+        builder.field("capped_phrases", cappedPhrases);
+        builder.endObject();
+
+        builder.startObject("time");
+        builder.timeValueField("lexing_in_millis", "lexing", lexingNanos, TimeUnit.NANOSECONDS);
+        builder.timeValueField("segmentation_in_millis", "segmentation", segmentationNanos, TimeUnit.NANOSECONDS);
+        builder.timeValueField("resolution_in_millis", "resolution", resolutionNanos, TimeUnit.NANOSECONDS);
+        builder.timeValueField("merging_in_millis", "merging", mergingNanos, TimeUnit.NANOSECONDS);
+        builder.endObject();
+
+        // bucket i counts the chunks tokenized in less than 2^i microseconds
+        builder.startObject("chunk_latency_in_micros");
+        final int last = chunkLatency.length - 1;
+        for (int i = 0; i < last; i++) {
+            builder.field("lt_" + (1L << i), chunkLatency[i]);
+        }
+        builder.field("gte_" + (1L << (last - 1)), chunkLatency[last]);
+        builder.endObject();
+
+        // bucket i counts the phrases of i + 1 syllables
+        builder.startObject("phrase_syllables");
+        for (int i = 0; i < phraseSyllables.length - 1; i++) {
+            builder.field(Integer.toString(i + 1), phraseSyllables[i]);
+        }
+        builder.field(phraseSyllables.length + "+", phraseSyllables[phraseSyllables.length - 1]);
+        builder.endObject();
+
+        builder.startObject("models");
+        builder.field("count", modelCount);
+        builder.byteSizeField("size_in_bytes", "size", modelSizeInBytes);
+        builder.endObject();
+
+        builder.startObject("segmentation_cache");
+        builder.field("count", cacheCount);
+        builder.byteSizeField("size_in_bytes", "size", cacheSizeInBytes);
+        builder.field("hits", cacheHits);
+        builder.field("misses", cacheMisses);
+        builder.field("evictions", cacheEvictions);
+        builder.field("rejections", cacheRejections);
+        builder.endObject();
+
+        // the work of each lexer rule, when vi.lexer.stats is enabled
+        if (lexerRules.length > 0) {
+            builder.startObject("lexer");
+            builder.startObject("rules");
+            for (int i = 0; i < lexerRules.length; i++) {
+                builder.startObject(lexerRules[i]);
+                builder.field("attempts", lexerAttempts[i]);
+                builder.field("matches", lexerMatches[i]);
+                builder.field("wins", lexerWins[i]);
+                builder.timeValueField("time_in_millis", "time", lexerNanos[i], TimeUnit.NANOSECONDS);
+                builder.endObject();
+            }
+            builder.endObject();
+            builder.startArray("never_won");
+            for (int i = 0; i < lexerRules.length; i++) {
+                if (lexerWins[i] == 0) {
+                    builder.value(lexerRules[i]);
+                }
+            }
+            builder.endArray();
+            builder.endObject();
+        }
+        return builder;
+    }
+}
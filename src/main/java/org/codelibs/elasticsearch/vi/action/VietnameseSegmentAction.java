@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.action;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.client.ElasticsearchClient;
+
+/**
+ * Segments a batch of texts into words, in parallel on the
+ * <tt>vi_segment</tt> thread pool of the node receiving the request.
+ */
+public class VietnameseSegmentAction extends Action<VietnameseSegmentRequest, VietnameseSegmentResponse, VietnameseSegmentRequestBuilder> {
+
+    public static final VietnameseSegmentAction INSTANCE = new VietnameseSegmentAction();
+
+    public static final String NAME = "indices:admin/vi/segment";
+
+    /**
+     * The thread pool the texts are segmented on.
+     */
+    public static final String THREAD_POOL_NAME = "vi_segment";
+
+    private VietnameseSegmentAction() {
+        super(NAME);
+    }
+
+    @Override
+    public VietnameseSegmentRequestBuilder newRequestBuilder(final ElasticsearchClient client) {
+        return new VietnameseSegmentRequestBuilder(client, this);
+    }
+
+    @Override
+    public VietnameseSegmentResponse newResponse() {
+        return new VietnameseSegmentResponse();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.action;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codelibs.elasticsearch.vi.analysis.SegmentationMode;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+/**
+ * A request to segment some texts with the default model.
+ */
+public class VietnameseSegmentRequest extends ActionRequest {
+
+    private List<String> texts = new ArrayList<>();
+
+    private SegmentationMode mode = SegmentationMode.ACCURATE;
+
+    public VietnameseSegmentRequest() {
+    }
+
+    public VietnameseSegmentRequest(final String... texts) {
+        this.texts.addAll(Arrays.asList(texts));
+    }
+
+    public List<String> texts() {
+        return texts;
+    }
+
+    public VietnameseSegmentRequest addText(final String text) {
+        texts.add(text);
+        return this;
+    }
+
+    public SegmentationMode mode() {
+        return mode;
+    }
+
+    /**
+     * @param mode how the phrases are segmented
+     */
+    public VietnameseSegmentRequest mode(final SegmentationMode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException validationException = null;
+        if (texts.isEmpty()) {
+            validationException = addValidationError("texts are missing", validationException);
+        } else if (texts.contains(null)) {
+            validationException = addValidationError("texts must not be null", validationException);
+        }
+        if (mode == null) {
+            validationException = addValidationError("mode is missing", validationException);
+        }
+        return validationException;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        texts = in.readList(StreamInput::readString);
+        mode = SegmentationMode.parse(in.readString());
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeStringList(texts);
+        out.writeString(mode.toString());
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.action;
+
+import org.codelibs.elasticsearch.vi.analysis.SegmentationMode;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.client.ElasticsearchClient;
+
+public class VietnameseSegmentRequestBuilder
+        extends ActionRequestBuilder<VietnameseSegmentRequest, VietnameseSegmentResponse, VietnameseSegmentRequestBuilder> {
+
+    public VietnameseSegmentRequestBuilder(final ElasticsearchClient client, final VietnameseSegmentAction action) {
+        super(client, action, new VietnameseSegmentRequest());
+    }
+
+    public VietnameseSegmentRequestBuilder addTexts(final String... texts) {
+        for (final String text : texts) {
+            request.addText(text);
+        }
+        return this;
+    }
+
+    public VietnameseSegmentRequestBuilder setMode(final SegmentationMode mode) {
+        request.mode(mode);
+        return this;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.action;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.codelibs.elasticsearch.vi.analysis.Token;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * The words of the segmented texts, in the order of the request.
+ */
+public class VietnameseSegmentResponse extends ActionResponse implements ToXContent {
+
+    private Token[][] tokens;
+
+    private long tookNanos;
+
+    VietnameseSegmentResponse() {
+    }
+
+    /**
+     * @param tokens the tokens of each text
+     * @param tookNanos the time spent segmenting the texts
+     */
+    public VietnameseSegmentResponse(final Token[][] tokens, final long tookNanos) {
+        this.tokens = tokens;
+        this.tookNanos = tookNanos;
+    }
+
+    /**
+     * @return the tokens of each text.
+     */
+    public Token[][] getTokens() {
+        return tokens;
+    }
+
+    public long getTookNanos() {
+        return tookNanos;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        tookNanos = in.readVLong();
+        tokens = new Token[in.readVInt()][];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = new Token[in.readVInt()];
+            for (int j = 0; j < tokens[i].length; j++) {
+                final Token token = new Token(in.readString(), in.readString());
+                token.setStartOffset(in.readVInt());
+                token.setEndOffset(in.readVInt());
+                token.setPos(in.readVInt());
+                tokens[i][j] = token;
+            }
+        }
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVLong(tookNanos);
+        out.writeVInt(tokens.length);
+        for (final Token[] textTokens : tokens) {
+            out.writeVInt(textTokens.length);
+            for (final Token token : textTokens) {
+                out.writeString(token.getType());
+                out.writeString(token.getText());
+                out.writeVInt(token.getStartOffset());
+                out.writeVInt(token.getEndOffset());
+                out.writeVInt(token.getPos());
+            }
+        }
+    }
+
+    @Override
+    public XContentBuilder toXContent(final XContentBuilder builder, final Params params) throws IOException {
+        builder.timeValueField("took_in_millis", "took", tookNanos, TimeUnit.NANOSECONDS);
+        builder.startArray("texts");
+        for (final Token[] textTokens : tokens) {
+            builder.startObject();
+            builder.startArray("tokens");
+            for (final Token token : textTokens) {
+                builder.startObject();
+                builder.field("token", token.getText());
+                builder.field("start_offset", token.getStartOffset());
+                builder.field("end_offset", token.getEndOffset());
+                builder.field("type", token.getType());
+                builder.field("position", token.getPos());
+                builder.endObject();
+            }
+            builder.endArray();
+            builder.endObject();
+        }
+        builder.endArray();
+        return builder;
+    }
+}
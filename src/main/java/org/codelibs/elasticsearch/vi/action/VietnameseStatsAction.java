@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.action;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.client.ElasticsearchClient;
+
+/**
+ * Gets the tokenization statistics of the nodes.
+ */
+public class VietnameseStatsAction extends Action<VietnameseStatsRequest, VietnameseStatsResponse, VietnameseStatsRequestBuilder> {
+
+    public static final VietnameseStatsAction INSTANCE = new VietnameseStatsAction();
+
+    public static final String NAME = "cluster:monitor/vi/stats";
+
+    private VietnameseStatsAction() {
+        super(NAME);
+    }
+
+    @Override
+    public VietnameseStatsRequestBuilder newRequestBuilder(final ElasticsearchClient client) {
+        return new VietnameseStatsRequestBuilder(client, this);
+    }
+
+    @Override
+    public VietnameseStatsResponse newResponse() {
+        return new VietnameseStatsResponse();
+    }
+}
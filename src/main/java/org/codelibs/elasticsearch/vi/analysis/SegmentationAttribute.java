@@ -0,0 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import org.apache.lucene.util.Attribute;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.SegmentationExplanation;
+
+/**
+ * The explanation of the segmentation of a phrase, carried by the first token
+ * of the phrase when the tokenizer explains its segmentations. It is reported
+ * by the <tt>explain</tt> option of the analyze API.
+ */
+public interface SegmentationAttribute extends Attribute {
+
+    /**
+     * @return the explanation, or <tt>null</tt> if the token does not start a
+     *         segmented phrase.
+     */
+    SegmentationExplanation getExplanation();
+
+    void setExplanation(SegmentationExplanation explanation);
+}
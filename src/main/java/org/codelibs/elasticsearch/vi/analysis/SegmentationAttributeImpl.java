@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.SegmentationExplanation;
+
+public class SegmentationAttributeImpl extends AttributeImpl implements SegmentationAttribute {
+
+    private SegmentationExplanation explanation;
+
+    @Override
+    public SegmentationExplanation getExplanation() {
+        return explanation;
+    }
+
+    @Override
+    public void setExplanation(final SegmentationExplanation explanation) {
+        this.explanation = explanation;
+    }
+
+    @Override
+    public void clear() {
+        explanation = null;
+    }
+
+    @Override
+    public void copyTo(final AttributeImpl target) {
+        ((SegmentationAttribute) target).setExplanation(explanation);
+    }
+
+    @Override
+    public void reflectWith(final AttributeReflector reflector) {
+        reflector.reflect(SegmentationAttribute.class, "segmentation", explanation != null ? explanation.toMap() : null);
+    }
+}
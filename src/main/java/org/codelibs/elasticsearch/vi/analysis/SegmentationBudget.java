@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+/**
+ * Bounds the cost of the segmentation of a document. A phrase longer than
+ * <tt>max_phrase_syllables</tt>, or met once the document has been tokenized
+ * for longer than <tt>time_budget</tt>, is segmented by forward maximum
+ * matching instead of on its lattice, and at most <tt>max_segmentations</tt>
+ * shortest paths of a lattice are enumerated.
+ * <p>
+ * The limits are shared by the tokenizers of a factory; the deadline is kept
+ * by {@link Deadline}, owned by one tokenizer and reset for each document.
+ */
+public class SegmentationBudget {
+
+    /**
+     * The budget of the tokenizers created without limits.
+     */
+    public static final SegmentationBudget UNLIMITED = new SegmentationBudget(-1, -1, TimeValue.MINUS_ONE);
+
+    private final int maxPhraseSyllables;
+
+    private final int maxSegmentations;
+
+    private final long timeBudgetNanos;
+
+    /**
+     * @param maxPhraseSyllables the number of syllables of the longest phrase
+     *        segmented on its lattice, <tt>-1</tt> for no limit
+     * @param maxSegmentations the maximum number of segmentations enumerated
+     *        for a phrase, <tt>-1</tt> for no limit
+     * @param timeBudget the time after which the phrases of a document are
+     *        segmented by forward maximum matching, <tt>-1</tt> for no limit
+     */
+    public SegmentationBudget(final int maxPhraseSyllables, final int maxSegmentations, final TimeValue timeBudget) {
+        if (maxPhraseSyllables == 0 || maxPhraseSyllables < -1) {
+            throw new IllegalArgumentException("max_phrase_syllables must be positive or -1: " + maxPhraseSyllables);
+        }
+        if (maxSegmentations == 0 || maxSegmentations < -1) {
+            throw new IllegalArgumentException("max_segmentations must be positive or -1: " + maxSegmentations);
+        }
+        this.maxPhraseSyllables = maxPhraseSyllables < 0 ? Integer.MAX_VALUE : maxPhraseSyllables;
+        this.maxSegmentations = maxSegmentations < 0 ? Integer.MAX_VALUE : maxSegmentations;
+        this.timeBudgetNanos = timeBudget.nanos() < 0 ? -1L : timeBudget.nanos();
+    }
+
+    /**
+     * Reads the budget of a tokenizer from its settings.
+     */
+    public static SegmentationBudget parse(final Settings settings) {
+        final int maxPhraseSyllables = settings.getAsInt("max_phrase_syllables", -1);
+        final int maxSegmentations = settings.getAsInt("max_segmentations", -1);
+        final TimeValue timeBudget = settings.getAsTime("time_budget", TimeValue.MINUS_ONE);
+        if (maxPhraseSyllables == -1 && maxSegmentations == -1 && timeBudget.nanos() < 0) {
+            return UNLIMITED;
+        }
+        return new SegmentationBudget(maxPhraseSyllables, maxSegmentations, timeBudget);
+    }
+
+    public int getMaxPhraseSyllables() {
+        return maxPhraseSyllables;
+    }
+
+    public int getMaxSegmentations() {
+        return maxSegmentations;
+    }
+
+    /**
+     * @return whether the documents have a time budget.
+     */
+    public boolean isTimed() {
+        return timeBudgetNanos >= 0;
+    }
+
+    /**
+     * @return the deadline of a document starting now.
+     */
+    public Deadline start() {
+        return new Deadline(this);
+    }
+
+    /**
+     * The end of the time budget of a document. It is not thread-safe.
+     */
+    public static final class Deadline {
+
+        private final SegmentationBudget budget;
+
+        private long deadline;
+
+        private boolean expired;
+
+        Deadline(final SegmentationBudget budget) {
+            this.budget = budget;
+            reset();
+        }
+
+        /**
+         * Starts the time budget of a new document.
+         */
+        public void reset() {
+            expired = false;
+            deadline = budget.isTimed() ? System.nanoTime() + budget.timeBudgetNanos : 0L;
+        }
+
+        public SegmentationBudget getBudget() {
+            return budget;
+        }
+
+        /**
+         * @return whether the time budget of the document is spent. The clock
+         *         is not read any more once it is.
+         */
+        public boolean isExpired() {
+            if (!expired && budget.isTimed()) {
+                expired = System.nanoTime() - deadline >= 0;
+            }
+            return expired;
+        }
+    }
+}
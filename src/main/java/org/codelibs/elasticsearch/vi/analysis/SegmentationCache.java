@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.AbstractLexiconRecognizer;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+/**
+ * A bounded cache of the segmentations chosen for phrases.
+ * <p>
+ * The phrases are keyed with their blanks collapsed, together with the
+ * overlay lexicon they were segmented with. The cache is bounded by a number
+ * of entries, or by an estimated size in bytes if
+ * <tt>vi.segmentation_cache.max_size</tt> is set. The estimated size of the
+ * entries is accounted to a circuit breaker, and the cache stops growing while
+ * the breaker has no room left.
+ */
+public class SegmentationCache {
+
+    public static final Setting<Integer> MAX_ENTRIES_SETTING =
+            Setting.intSetting("vi.segmentation_cache.max_entries", 100000, 0, Property.NodeScope);
+
+    public static final Setting<ByteSizeValue> MAX_SIZE_SETTING =
+            Setting.byteSizeSetting("vi.segmentation_cache.max_size", new ByteSizeValue(-1), Property.NodeScope);
+
+    private final Cache<Key, String[]> cache;
+
+    private final AtomicLong ramBytesUsed = new AtomicLong();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private final CircuitBreaker breaker;
+
+    private SegmentationCache(final CacheBuilder<Key, String[]> builder, final CircuitBreaker breaker) {
+        this.breaker = breaker;
+        this.cache = builder.removalListener(notification -> {
+            final long bytes = ramBytesUsed(notification.getKey(), notification.getValue());
+            ramBytesUsed.addAndGet(-bytes);
+            breaker.addWithoutBreaking(-bytes);
+        }).build();
+    }
+
+    /**
+     * Builds a cache from the node settings.
+     *
+     * @param settings the node settings
+     * @param breaker the breaker the entries are accounted to
+     * @return the cache, or <tt>null</tt> if the cache is disabled
+     */
+    public static SegmentationCache build(final Settings settings, final CircuitBreaker breaker) {
+        final int maxEntries = MAX_ENTRIES_SETTING.get(settings);
+        final ByteSizeValue maxSize = MAX_SIZE_SETTING.get(settings);
+        final CacheBuilder<Key, String[]> builder = CacheBuilder.builder();
+        if (maxSize.getBytes() >= 0) {
+            if (maxSize.getBytes() == 0) {
+                return null;
+            }
+            builder.setMaximumWeight(maxSize.getBytes()).weigher((key, value) -> ramBytesUsed(key, value));
+        } else {
+            if (maxEntries == 0) {
+                return null;
+            }
+            builder.setMaximumWeight(maxEntries);
+        }
+        return new SegmentationCache(builder, breaker);
+    }
+
+    /**
+     * @param phrase a phrase
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+     * @return the cached segmentation of the phrase, or <tt>null</tt>.
+     */
+    public String[] get(final String phrase, final AbstractLexiconRecognizer overlay) {
+        return cache.get(new Key(phrase, overlay));
+    }
+
+    /**
+     * Caches the segmentation of a phrase, unless the breaker has no room
+     * left for it.
+     *
+     * @param phrase a phrase
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+     * @param segmentation the segmentation of the phrase
+     */
+    public void put(final String phrase, final AbstractLexiconRecognizer overlay, final String[] segmentation) {
+        final Key key = new Key(phrase, overlay);
+        final long bytes = ramBytesUsed(key, segmentation);
+        // check the limit first, a cache is not worth a breaking log per phrase
+        final long limit = breaker.getLimit();
+        if (limit > 0 && breaker.getUsed() + bytes * breaker.getOverhead() > limit) {
+            rejections.increment();
+            return;
+        }
+        try {
+            breaker.addEstimateBytesAndMaybeBreak(bytes, "<vi_segmentation_cache>");
+        } catch (final CircuitBreakingException e) {
+            rejections.increment();
+            return;
+        }
+        ramBytesUsed.addAndGet(bytes);
+        cache.put(key, segmentation);
+    }
+
+    /**
+     * Removes all the segmentations, for example when a lexicon changes.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the hit, miss and eviction counts.
+     */
+    public Cache.CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the number of segmentations not cached for lack of memory.
+     */
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return the number of cached segmentations.
+     */
+    public int count() {
+        return cache.count();
+    }
+
+    /**
+     * @return the estimated size of the cached segmentations in bytes.
+     */
+    public long ramBytesUsed() {
+        return ramBytesUsed.get();
+    }
+
+    private static long ramBytesUsed(final Key key, final String[] value) {
+        // the key, its phrase, the array and the strings of the value
+        long size = 32 + 40 + 2L * key.phrase.length() + 16 + 4L * value.length;
+        for (final String word : value) {
+            size += 40 + 2L * word.length();
+        }
+        return size;
+    }
+
+    private static final class Key {
+        private final String phrase;
+        private final AbstractLexiconRecognizer overlay;
+        private final int hashCode;
+
+        private Key(final String phrase, final AbstractLexiconRecognizer overlay) {
+            this.phrase = collapseBlanks(phrase);
+            this.overlay = overlay;
+            this.hashCode = 31 * this.phrase.hashCode() + System.identityHashCode(overlay);
+        }
+
+        /**
+         * Replaces each run of spaces by a single blank, spaces being the
+         * <tt>\p{Space}</tt> characters separating the syllables of a phrase.
+         */
+        private static String collapseBlanks(final String phrase) {
+            StringBuilder buf = null;
+            final int length = phrase.length();
+            for (int i = 0; i < length; i++) {
+                final char c = phrase.charAt(i);
+                if (isSpace(c) && (c != ' ' || (i + 1 < length && isSpace(phrase.charAt(i + 1))))) {
+                    if (buf == null) {
+                        buf = new StringBuilder(length);
+                        buf.append(phrase, 0, i);
+                    }
+                    while (i + 1 < length && isSpace(phrase.charAt(i + 1))) {
+                        i++;
+                    }
+                    buf.append(' ');
+                } else if (buf != null) {
+                    buf.append(c);
+                }
+            }
+            return buf == null ? phrase : buf.toString();
+        }
+
+        private static boolean isSpace(final char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return overlay == other.overlay && phrase.equals(other.phrase);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
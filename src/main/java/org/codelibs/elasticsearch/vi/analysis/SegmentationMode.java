@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * How the phrases are segmented into words.
+ */
+public enum SegmentationMode {
+
+    /**
+     * The word lattice of the phrase is built and its shortest paths are
+     * ranked by the unigram model.
+     */
+    ACCURATE,
+
+    /**
+     * The phrase is segmented by forward maximum matching over the lexicons,
+     * in one pass and without any lattice.
+     */
+    FAST,
+
+    /**
+     * The phrase is segmented by forward and backward maximum matching, and
+     * on the lattice of the spans where they disagree.
+     */
+    HYBRID,
+
+    /**
+     * The phrase is segmented on its lattice and all its shortest paths are
+     * emitted as a token graph, the words of the paths being alternatives.
+     * Meant for search analyzers, with graph aware query parsing.
+     */
+    GRAPH;
+
+    /**
+     * @param value the name of a mode, case insensitive
+     * @return the mode
+     * @throws IllegalArgumentException if there is no such mode
+     */
+    public static SegmentationMode parse(final String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown segmentation mode [" + value + "], expected one of "
+                    + Arrays.toString(values()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
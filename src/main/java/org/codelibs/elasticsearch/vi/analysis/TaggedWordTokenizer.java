@@ -2,147 +2,321 @@ package org.codelibs.elasticsearch.vi.analysis;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.LineNumberReader;
-import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.LexiconUnmarshaller;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.jaxb.Corpus;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.jaxb.W;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.Lexer;
 import org.codelibs.elasticsearch.vi.nlp.tokenizer.ResultMerger;
 import org.codelibs.elasticsearch.vi.nlp.tokenizer.ResultSplitter;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.AbstractLexiconRecognizer;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.SegmentationExplanation;
 import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.Segmenter;
 import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.UnigramResolver;
 import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.LexerRule;
 import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.TaggedWord;
 
+/**
+ * Tokenizes and segments Vietnamese texts.
+ * <p>
+ * The models (lexer rules, lexicon automaton, unigram model and normalization
+ * rules) are loaded once and never modified, and every call keeps its state in
+ * local variables, so a single instance is shared by all the tokenizers of a
+ * factory and used by many threads without locking.
+ */
 public class TaggedWordTokenizer {
 
     private static final Logger logger = LogManager.getLogger(TaggedWordTokenizer.class);
 
-    private Segmenter segmenter;
+    /**
+     * The location of the properties of the bundled model.
+     */
+    public static final String DEFAULT_MODEL = "/tokenizer.properties";
 
-    private ResultMerger resultMerger;
+    private static final LexerRule PHRASE_RULE = new LexerRule("phrase");
 
-    private ResultSplitter resultSplitter;
+    private final Segmenter segmenter;
 
-    private final List<LexerRule> rules = new ArrayList<>();
+    private final ResultMerger resultMerger;
+
+    private final ResultSplitter resultSplitter;
+
+    private final List<LexerRule> rules;
+
+    private final Lexer lexer;
+
+    private final SegmentationCache segmentationCache;
+
+    private final TokenizerMetrics metrics;
 
     public TaggedWordTokenizer() {
-        try (InputStream in = getClass().getResourceAsStream("/tokenizer.properties")) {
+        this(loadProperties(DEFAULT_MODEL));
+    }
+
+    public TaggedWordTokenizer(final Properties properties) {
+        this(properties, null, null, null);
+    }
+
+    /**
+     * @param properties the properties of the model
+     * @param userLexiconRecognizer supplies the current user lexicon
+     *        recognizer, or <tt>null</tt>
+     * @param segmentationCache the cache of the segmentations of phrases, or
+     *        <tt>null</tt>
+     * @param metrics the counters the work is recorded to, or <tt>null</tt>
+     */
+    public TaggedWordTokenizer(final Properties properties, final Supplier<? extends AbstractLexiconRecognizer> userLexiconRecognizer,
+            final SegmentationCache segmentationCache, final TokenizerMetrics metrics) {
+        this.segmentationCache = segmentationCache;
+        this.metrics = metrics;
+        rules = loadLexerRules(properties.getProperty("lexers"));
+        lexer = new Lexer(rules);
+        resultMerger = new ResultMerger();
+        resultSplitter = new ResultSplitter(properties);
+        segmenter = new Segmenter(properties, new UnigramResolver(properties.getProperty("unigramModel")), userLexiconRecognizer);
+    }
+
+    /**
+     * Loads the properties describing a model.
+     *
+     * @param location the location of the properties in the class path
+     * @return the properties of the model
+     */
+    public static Properties loadProperties(final String location) {
+        try (InputStream in = TaggedWordTokenizer.class.getResourceAsStream(location)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Model not found: " + location);
+            }
             final Properties properties = new Properties();
             properties.load(in);
-            loadLexerRules(properties.getProperty("lexers"));
-            resultMerger = new ResultMerger();
-            resultSplitter = new ResultSplitter(properties);
-            segmenter = new Segmenter(properties, new UnigramResolver(properties.getProperty("unigramModel")));
+            return properties;
         } catch (final IOException e) {
-            logger.warn(e);
+            throw new UncheckedIOException("Failed to load " + location, e);
         }
     }
 
-    private void loadLexerRules(final String lexersFilename) {
+    private static List<LexerRule> loadLexerRules(final String lexersFilename) {
+        logger.debug("Loading lexer rules from {}", lexersFilename);
         final LexiconUnmarshaller unmarshaller = new LexiconUnmarshaller();
         final Corpus corpus = unmarshaller.unmarshal(lexersFilename);
         final List<W> lexers = corpus.getBody().getW();
+        final List<LexerRule> rules = new ArrayList<>(lexers.size());
         for (final W w : lexers) {
             rules.add(new LexerRule(w.getMsd(), w.getContent()));
         }
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * Creates a recognizer of additional words, normalized as the phrases
+     * are before their segmentation.
+     *
+     * @param words the words of the lexicon
+     * @return the lexicon recognizer
+     */
+    public AbstractLexiconRecognizer newLexiconRecognizer(final Collection<String> words) {
+        return segmenter.newLexiconRecognizer(words);
+    }
+
+    /**
+     * Tokenizes a text, segmenting its phrases with the additional words and
+     * in the mode of the options, within the budget of the document, and
+     * recording the cost of each stage. Each tagged word carries the offsets
+     * of its text in the input, that is the offset of the text plus the
+     * position of the word in the text.
+     *
+     * @param text the text to tokenize
+     * @param offset the offset of the text in the input
+     * @param options the options of the tokenizer
+     * @param deadline the budget of the document, or <tt>null</tt>
+     * @param trace the trace the cost is added to, or <tt>null</tt>
+     * @return the tagged words of the text
+     */
+    public List<TaggedWord> tokenize(final String text, final int offset, final TokenizerOptions options,
+            final SegmentationBudget.Deadline deadline, final TokenizationTrace trace) {
+        final AbstractLexiconRecognizer overlay = options.getOverlay();
+        final SegmentationMode mode = options.getMode();
+        if (trace == null && metrics == null) {
+            return tokenizeText(text, offset, overlay, mode, deadline, null);
+        }
+        final TokenizationTrace chunkTrace = trace != null ? trace : new TokenizationTrace();
+        final long segmentationNanos = chunkTrace.segmentationNanos;
+        final long resolutionNanos = chunkTrace.resolutionNanos;
+        final long mergingNanos = chunkTrace.mergingNanos;
+        final long startTime = System.nanoTime();
+        final List<TaggedWord> result = tokenizeText(text, offset, overlay, mode, deadline, chunkTrace);
+        final long totalNanos = System.nanoTime() - startTime;
+        chunkTrace.totalNanos += totalNanos;
+        if (metrics != null) {
+            metrics.onChunk(totalNanos, chunkTrace.segmentationNanos - segmentationNanos,
+                    chunkTrace.resolutionNanos - resolutionNanos, chunkTrace.mergingNanos - mergingNanos);
+        }
+        return result;
     }
 
-    public List<TaggedWord> tokenize(final Reader input) throws IOException {
+    private List<TaggedWord> tokenizeText(final String text, final int offset, final AbstractLexiconRecognizer overlay,
+            final SegmentationMode mode, final SegmentationBudget.Deadline deadline, final TokenizationTrace trace) {
+        final int maxSegmentations = deadline != null ? deadline.getBudget().getMaxSegmentations() : Integer.MAX_VALUE;
         final List<TaggedWord> result = new ArrayList<>();
-        final LineNumberReader reader = new LineNumberReader(input);
-        String line = null;
-        int column = 1;
+        final Lexer.Scanner scanner = lexer.newScanner();
+        final int textLength = text.length();
+        // the position of the next line in the text
+        int next = 0;
+        int lineNumber = 0;
+        // the current line, the position of the next token in the text and
+        // the end of the rest of the line, which is trimmed once a token has
+        // been read
+        int lineStart = 0;
+        int pos = 0;
+        int end = 0;
+        scanner.reset(text);
         while (true) {
-            if (line == null || line.trim().length() == 0) {
-                line = reader.readLine();
-                if (line == null) {
+            if (skipBlanks(text, pos, end) == end) {
+                if (next >= textLength) {
                     break;
                 }
+                int lineEnd = next;
+                while (lineEnd < textLength && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                    lineEnd++;
+                }
+                lineStart = next;
+                pos = next;
+                end = lineEnd;
+                lineNumber++;
+                next = lineEnd;
+                if (next < textLength && text.charAt(next) == '\r') {
+                    next++;
+                }
+                if (next < textLength && text.charAt(next) == '\n') {
+                    next++;
+                }
+                continue;
             }
             TaggedWord taggedWord = null;
             int tokenEnd = -1;
-            int longestMatchLen = -1;
             LexerRule selectedRule = null;
             // find the rule that matches the longest substring of the input
-            for (int i = 0; i < rules.size(); i++) {
-                final LexerRule rule = rules.get(i);
-                // get the precompiled pattern for this rule
-                final Pattern pattern = rule.getPattern();
-                // create a matcher to perform match operations on the string
-                // by interpreting the pattern
-                final Matcher matcher = pattern.matcher(line);
-                // find the longest match from the start
-                if (matcher.lookingAt()) {
-                    final int matchLen = matcher.end();
-                    if (matchLen > longestMatchLen) {
-                        longestMatchLen = matchLen;
-                        tokenEnd = matchLen;
-                        selectedRule = rule;
-                    }
-                }
+            if (scanner.lookingAt(pos, end)) {
+                tokenEnd = scanner.end();
+                selectedRule = scanner.rule();
             }
             //
             // check if this relates to an email address (to fix an error with email)
             // yes, I know that this "manual" method must be improved by a more general way.
             // But at least, it can fix an error with email addresses at the moment. :-)
             int endIndex = tokenEnd;
-            if (tokenEnd < line.length()) {
-                if (line.charAt(tokenEnd) == '@') {
-                    while (endIndex > 0 && line.charAt(endIndex) != ' ') {
+            if (tokenEnd < end) {
+                if (text.charAt(tokenEnd) == '@') {
+                    while (endIndex > pos && text.charAt(endIndex) != ' ') {
                         endIndex--;
                     }
                 }
             }
             // the following statement fixes the error reported by hiepnm, for the case like "(School@net)"
-            if (endIndex == 0) {
+            if (endIndex == pos) {
                 endIndex = tokenEnd;
             }
 
             if (selectedRule == null) {
-                selectedRule = new LexerRule("phrase");
+                selectedRule = PHRASE_RULE;
             }
-            taggedWord = new TaggedWord(selectedRule, line.substring(0, endIndex), reader.getLineNumber(), column);
-            // we match something, skip past the token, get ready
-            // for the next match, and return the token
-            column += endIndex;
-            line = line.substring(endIndex).trim();
+            // the offsets of the matched text without its surrounding blanks
+            final int wordStart = skipBlanks(text, pos, endIndex);
+            final int wordEnd = Math.max(wordStart, trimBlanks(text, pos, endIndex));
+            taggedWord = new TaggedWord(selectedRule, text.substring(pos, endIndex), lineNumber, wordStart - lineStart + 1,
+                    offset + wordStart, offset + wordEnd);
+            // we match something, skip past the token and the blanks around
+            // the rest of the line, get ready for the next match
+            pos = skipBlanks(text, endIndex, end);
+            end = trimBlanks(text, pos, end);
 
             // if this token is a phrase, we need to use a segmenter
             // object to segment it.
             if (taggedWord.isPhrase()) {
-                final String phrase = taggedWord.getText().trim();
+                final String phrase = taggedWord.getText();
                 if (phrase.contains(" ")) {
-                    final String ruleName = taggedWord.getRule().getName();
-                    String[] tokens = null;
-                    // segment the phrase
-                    final List<String[]> segmentations = new CopyOnWriteArrayList<>(segmenter.segment(phrase));
-                    // resolved the result if there is such option
-                    // and the there are many segmentations.
-                    if (segmentations.size() > 1) {
-                        tokens = segmenter.resolveAmbiguity(segmentations);
-                    } else {
-                        // get the first segmentation
-                        final Iterator<String[]> it = segmentations.iterator();
-                        if (it.hasNext()) {
-                            tokens = it.next();
+                    final LexerRule rule = taggedWord.getRule();
+                    final int syllables = countSyllables(phrase);
+                    final long phraseStart = trace != null ? System.nanoTime() : 0L;
+                    // segment the phrase, unless the same phrase has been seen
+                    // and the segmentation is not explained
+                    final SegmentationExplanation explanation = trace != null && trace.explanations != null
+                            ? new SegmentationExplanation(phrase, taggedWord.getStartOffset()) : null;
+                    String[] tokens = segmentationCache != null && explanation == null && mode == SegmentationMode.ACCURATE
+                            ? segmentationCache.get(phrase, overlay) : null;
+                    // the phrases over the budget are segmented greedily
+                    final SegmentationMode phraseMode = tokens == null && deadline != null && mode != SegmentationMode.FAST
+                            ? checkBudget(syllables, deadline, mode) : mode;
+                    // the competing segmentations of the graph mode
+                    List<String[]> segmentations = null;
+                    if (phraseMode == SegmentationMode.GRAPH) {
+                        segmentations = segmentAll(phrase, overlay, maxSegmentations, null, trace, explanation);
+                        if (segmentations.size() == 1) {
+                            tokens = segmentations.get(0);
+                        }
+                        if (explanation != null) {
+                            trace.explanations.add(explanation);
+                        }
+                    } else if (phraseMode != SegmentationMode.ACCURATE) {
+                        // the greedy segmentations differ from the accurate
+                        // ones, they are not cached
+                        tokens = segmentGreedy(phrase, overlay, phraseMode, maxSegmentations, trace, explanation);
+                        if (explanation != null) {
+                            trace.explanations.add(explanation);
+                        }
+                    } else if (explanation != null) {
+                        tokens = resolve(segmentAll(phrase, overlay, maxSegmentations, null, trace, explanation), trace, explanation);
+                        trace.explanations.add(explanation);
+                    } else if (tokens == null) {
+                        final AtomicBoolean capped = new AtomicBoolean();
+                        segmentations = segmentAll(phrase, overlay, maxSegmentations, capped, trace, null);
+                        tokens = resolve(segmentations, trace, null);
+                        // a truncated enumeration depends on the budget
+                        if (segmentationCache != null && !capped.get()) {
+                            segmentationCache.put(phrase, overlay, tokens);
+                        }
+                    } else if (trace != null) {
+                        trace.lastSegmentations = 0;
+                    }
+                    if (trace != null) {
+                        trace.onPhrase(phrase, syllables, trace.lastSegmentations, System.nanoTime() - phraseStart);
+                        if (metrics != null) {
+                            metrics.onPhrase(syllables);
                         }
                     }
 
-                    // build tokens of the segmentation
-                    for (final String token : tokens) {
-                        result.add(new TaggedWord(new LexerRule(ruleName), token, reader.getLineNumber(), column));
-                        column += token.length();
+                    if (tokens == null) {
+                        addGraph(result, text, offset, phrase, taggedWord.getStartOffset() - offset, rule, segmentations,
+                                lineNumber, lineStart);
+                    } else {
+                        // build tokens of the segmentation, the words are located by
+                        // walking their syllables over the phrase in the text
+                        int cursor = taggedWord.getStartOffset() - offset;
+                        for (final String token : tokens) {
+                            cursor = skipSpaces(text, cursor);
+                            final int start = cursor;
+                            for (int i = 0; i < token.length(); i++) {
+                                if (token.charAt(i) == ' ') {
+                                    cursor = skipSpaces(text, cursor);
+                                } else {
+                                    cursor++;
+                                }
+                            }
+                            result.add(new TaggedWord(rule, token, lineNumber, start - lineStart + 1, offset + start,
+                                    offset + cursor));
+                        }
                     }
                 } else { // phrase is simple
                     if (phrase.length() > 0) {
@@ -163,13 +337,272 @@ public class TaggedWordTokenizer {
                     }
                 } else {
                     // we simply add it into the list
-                    if (taggedWord.getText().trim().length() > 0) {
+                    if (taggedWord.getText().length() > 0) {
                         result.add(taggedWord);
                     }
                 }
             }
         }
 
-        return result.size() > 0 ? resultMerger.mergeList(result) : result;
+        if (trace == null) {
+            return result.size() > 0 ? resultMerger.mergeList(result) : result;
+        }
+        final long mergeStart = System.nanoTime();
+        final List<TaggedWord> merged = result.size() > 0 ? resultMerger.mergeList(result) : result;
+        trace.mergingNanos += System.nanoTime() - mergeStart;
+        return merged;
+    }
+
+    /**
+     * Segments a phrase without resolving the ambiguities, enumerating at
+     * most <tt>maxSegmentations</tt> shortest paths.
+     *
+     * @param capped set if the phrase has more than
+     *        <tt>maxSegmentations</tt> segmentations, or <tt>null</tt>
+     * @param trace the trace the segmentation time is added to, or
+     *        <tt>null</tt>
+     * @param explanation the explanation to fill, or <tt>null</tt>
+     * @return the segmentations given by the shortest paths
+     */
+    private List<String[]> segmentAll(final String phrase, final AbstractLexiconRecognizer overlay, final int maxSegmentations,
+            final AtomicBoolean capped, final TokenizationTrace trace, final SegmentationExplanation explanation) {
+        final long start = trace != null ? System.nanoTime() : 0L;
+        final List<String[]> segmentations = segmenter.segment(phrase, overlay, explanation, maxSegmentations, () -> {
+            if (capped != null) {
+                capped.set(true);
+            }
+            if (metrics != null) {
+                metrics.onCappedPhrase();
+            }
+        });
+        if (trace != null) {
+            trace.segmentationNanos += System.nanoTime() - start;
+            trace.lastSegmentations = segmentations.size();
+        }
+        return segmentations;
+    }
+
+    /**
+     * Resolves the ambiguities between the segmentations of a phrase.
+     *
+     * @param trace the trace the resolution time is added to, or
+     *        <tt>null</tt>
+     * @param explanation the explanation to fill, or <tt>null</tt>
+     * @return the words of the most probable segmentation
+     */
+    private String[] resolve(final List<String[]> segmentations, final TokenizationTrace trace,
+            final SegmentationExplanation explanation) {
+        if (segmentations.size() == 1) {
+            return segmentations.get(0);
+        }
+        if (trace == null) {
+            return segmenter.resolveAmbiguity(segmentations);
+        }
+        final long start = System.nanoTime();
+        final String[] resolved = segmenter.resolveAmbiguity(segmentations, explanation);
+        trace.resolutionNanos += System.nanoTime() - start;
+        return resolved;
+    }
+
+    /**
+     * Checks a phrase against the budget of the document.
+     *
+     * @param syllables the number of syllables of the phrase
+     * @return {@link SegmentationMode#FAST} if the phrase is too long or the
+     *         time budget of the document is spent, <tt>mode</tt> otherwise
+     */
+    private SegmentationMode checkBudget(final int syllables, final SegmentationBudget.Deadline deadline,
+            final SegmentationMode mode) {
+        if (syllables > deadline.getBudget().getMaxPhraseSyllables()) {
+            if (metrics != null) {
+                metrics.onLongPhrase();
+            }
+            return SegmentationMode.FAST;
+        }
+        if (deadline.isExpired()) {
+            if (metrics != null) {
+                metrics.onLatePhrase();
+            }
+            return SegmentationMode.FAST;
+        }
+        return mode;
+    }
+
+    /**
+     * Adds the words of the segmentations of a phrase as a token graph. The
+     * positions are the word boundaries of all the segmentations, in order: a
+     * word is at the position of the boundary it starts at and spans the
+     * positions up to the boundary it ends at. The words starting at the same
+     * position are added longest first.
+     *
+     * @param phrase the phrase
+     * @param phraseStart the position of the phrase in the text
+     */
+    private static void addGraph(final List<TaggedWord> result, final String text, final int offset, final String phrase,
+            final int phraseStart, final LexerRule rule, final List<String[]> segmentations, final int lineNumber, final int lineStart) {
+        // locate the syllables of the phrase in the text
+        final String[] syllables = phrase.split("\\p{Space}+");
+        final int n = syllables.length;
+        final int[] starts = new int[n];
+        final int[] ends = new int[n];
+        int cursor = phraseStart;
+        for (int k = 0; k < n; k++) {
+            cursor = skipSpaces(text, cursor);
+            starts[k] = cursor;
+            cursor += syllables[k].length();
+            ends[k] = cursor;
+        }
+        // the words keyed by their first syllable, then by their length in
+        // decreasing order
+        final boolean[] boundaries = new boolean[n + 1];
+        final Map<Integer, String> words = new TreeMap<>();
+        for (final String[] segmentation : segmentations) {
+            int from = 0;
+            for (final String word : segmentation) {
+                final int to = from + countSyllables(word);
+                boundaries[from] = true;
+                words.put(from * (n + 1) + n - to, word);
+                from = to;
+            }
+        }
+        boundaries[n] = true;
+        final int[] positions = new int[n + 1];
+        int position = 0;
+        for (int k = 0; k <= n; k++) {
+            if (boundaries[k]) {
+                positions[k] = position++;
+            }
+        }
+        int lastPosition = -1;
+        for (final Map.Entry<Integer, String> entry : words.entrySet()) {
+            final int from = entry.getKey() / (n + 1);
+            final int to = n - entry.getKey() % (n + 1);
+            final TaggedWord word = new TaggedWord(rule, entry.getValue(), lineNumber, starts[from] - lineStart + 1,
+                    offset + starts[from], offset + ends[to - 1]);
+            word.setPositionIncrement(positions[from] - lastPosition);
+            word.setPositionLength(positions[to] - positions[from]);
+            result.add(word);
+            lastPosition = positions[from];
+        }
+    }
+
+    /**
+     * Segments a phrase by maximum matching, forward only in the fast mode,
+     * forward and backward in the hybrid mode, where the spans segmented on
+     * their lattice enumerate at most <tt>maxSegmentations</tt> shortest
+     * paths.
+     *
+     * @param trace the trace the segmentation time is added to, or
+     *        <tt>null</tt>
+     * @param explanation the explanation to fill, or <tt>null</tt>
+     * @return the words of the phrase
+     */
+    private String[] segmentGreedy(final String phrase, final AbstractLexiconRecognizer overlay, final SegmentationMode mode,
+            final int maxSegmentations, final TokenizationTrace trace, final SegmentationExplanation explanation) {
+        final long start = trace != null ? System.nanoTime() : 0L;
+        final String[] words;
+        if (mode == SegmentationMode.FAST) {
+            words = segmenter.segmentForward(phrase, overlay, explanation);
+        } else {
+            words = segmenter.segmentHybrid(phrase, overlay, explanation, maxSegmentations, metrics != null ? metrics::onFallback : null,
+                    metrics != null ? metrics::onCappedPhrase : null);
+            if (metrics != null) {
+                metrics.onHybridPhrase();
+            }
+        }
+        if (trace != null) {
+            trace.segmentationNanos += System.nanoTime() - start;
+            trace.lastSegmentations = 1;
+        }
+        return words;
+    }
+
+    /**
+     * @return the number of syllables of a phrase, that is the number of runs
+     *         of characters which are not spaces.
+     */
+    private static int countSyllables(final String phrase) {
+        int syllables = 0;
+        boolean inSyllable = false;
+        for (int i = 0; i < phrase.length(); i++) {
+            if (isSpace(phrase.charAt(i))) {
+                inSyllable = false;
+            } else if (!inSyllable) {
+                inSyllable = true;
+                syllables++;
+            }
+        }
+        return syllables;
+    }
+
+    /**
+     * @return the estimated size of the model in bytes, the segmentation
+     *         cache excepted.
+     */
+    public long ramBytesUsed() {
+        long size = segmenter.ramBytesUsed() + resultSplitter.ramBytesUsed() + lexer.ramBytesUsed();
+        for (final LexerRule rule : rules) {
+            size += rule.ramBytesUsed();
+        }
+        return size;
+    }
+
+    /**
+     * @return the lexer splitting the text into tokens.
+     */
+    public Lexer getLexer() {
+        return lexer;
+    }
+
+    /**
+     * @return the segmentation cache, or <tt>null</tt> if phrases are not
+     *         cached.
+     */
+    public SegmentationCache getSegmentationCache() {
+        return segmentationCache;
+    }
+
+    /**
+     * @return the counters the work is recorded to, or <tt>null</tt>.
+     */
+    public TokenizerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the position of the first character of the range which is not
+     *         removed by {@link String#trim()}, or <tt>end</tt>.
+     */
+    private static int skipBlanks(final String s, int start, final int end) {
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * @return the position after the last character of the range which is not
+     *         removed by {@link String#trim()}, or <tt>start</tt>.
+     */
+    private static int trimBlanks(final String s, final int start, int end) {
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * @return the position of the first character which is not a space, as
+     *         the syllables of a phrase are separated by <tt>\p{Space}+</tt>.
+     */
+    private static int skipSpaces(final String s, int pos) {
+        while (pos < s.length() && isSpace(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isSpace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
     }
 }
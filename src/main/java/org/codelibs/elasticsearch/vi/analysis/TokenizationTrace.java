@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.SegmentationExplanation;
+
+/**
+ * The cost of the tokenization of a document, stage by stage, with the phrase
+ * that took the longest to segment.
+ * <p>
+ * A trace is filled by {@link TaggedWordTokenizer} chunk after chunk. It is
+ * not thread-safe: a tokenizer owns its trace and resets it for each document.
+ */
+public class TokenizationTrace {
+
+    long totalNanos;
+
+    long segmentationNanos;
+
+    long resolutionNanos;
+
+    long mergingNanos;
+
+    int phrases;
+
+    long segmentations;
+
+    String slowestPhrase;
+
+    long slowestPhraseNanos = -1;
+
+    int slowestPhraseSyllables;
+
+    int slowestPhraseSegmentations;
+
+    /**
+     * The number of segmentations enumerated for the last phrase.
+     */
+    int lastSegmentations;
+
+    /**
+     * The explanations of the segmented phrases, or <tt>null</tt> if the
+     * segmentations are not explained.
+     */
+    final List<SegmentationExplanation> explanations;
+
+    public TokenizationTrace() {
+        this(false);
+    }
+
+    /**
+     * @param explain <tt>true</tt> to explain the segmentation of each phrase,
+     *        bypassing the segmentation cache
+     */
+    public TokenizationTrace(final boolean explain) {
+        explanations = explain ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Clears the trace before a new document.
+     */
+    public void reset() {
+        totalNanos = 0;
+        segmentationNanos = 0;
+        resolutionNanos = 0;
+        mergingNanos = 0;
+        phrases = 0;
+        segmentations = 0;
+        slowestPhrase = null;
+        slowestPhraseNanos = -1;
+        slowestPhraseSyllables = 0;
+        slowestPhraseSegmentations = 0;
+        lastSegmentations = 0;
+        if (explanations != null) {
+            explanations.clear();
+        }
+    }
+
+    void onPhrase(final String phrase, final int syllables, final int phraseSegmentations, final long nanos) {
+        phrases++;
+        segmentations += phraseSegmentations;
+        if (nanos > slowestPhraseNanos) {
+            slowestPhrase = phrase;
+            slowestPhraseNanos = nanos;
+            slowestPhraseSyllables = syllables;
+            slowestPhraseSegmentations = phraseSegmentations;
+        }
+    }
+
+    /**
+     * @return the explanations of the phrases segmented since the last reset,
+     *         or <tt>null</tt> if the segmentations are not explained.
+     */
+    public List<SegmentationExplanation> getExplanations() {
+        return explanations;
+    }
+
+    /**
+     * @return the time spent in the tokenizer.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return the time spent in the lexer, that is the time not spent in the
+     *         other stages.
+     */
+    public long getLexingNanos() {
+        return Math.max(0, totalNanos - segmentationNanos - resolutionNanos - mergingNanos);
+    }
+
+    public long getSegmentationNanos() {
+        return segmentationNanos;
+    }
+
+    public long getResolutionNanos() {
+        return resolutionNanos;
+    }
+
+    public long getMergingNanos() {
+        return mergingNanos;
+    }
+
+    /**
+     * @return the number of phrases segmented, or found in the cache.
+     */
+    public int getPhrases() {
+        return phrases;
+    }
+
+    /**
+     * @return the number of segmentations enumerated for all the phrases.
+     */
+    public long getSegmentations() {
+        return segmentations;
+    }
+
+    /**
+     * @return the phrase that took the longest to segment, or <tt>null</tt>.
+     */
+    public String getSlowestPhrase() {
+        return slowestPhrase;
+    }
+
+    public long getSlowestPhraseNanos() {
+        return slowestPhraseNanos;
+    }
+
+    public int getSlowestPhraseSyllables() {
+        return slowestPhraseSyllables;
+    }
+
+    /**
+     * @return the number of segmentations enumerated for the slowest phrase,
+     *         <tt>0</tt> if it was found in the cache.
+     */
+    public int getSlowestPhraseSegmentations() {
+        return slowestPhraseSegmentations;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node wide counters of the tokenization work.
+ * <p>
+ * All the counters are {@link LongAdder}s, so the threads tokenizing at the
+ * same time do not contend on them.
+ */
+public class TokenizerMetrics {
+
+    /**
+     * The chunk latency buckets: bucket <tt>i</tt> counts the chunks tokenized
+     * in less than <tt>2^i</tt> microseconds, the last one counts the others.
+     */
+    public static final int LATENCY_BUCKETS = 21;
+
+    /**
+     * The phrase length buckets: bucket <tt>i</tt> counts the phrases of
+     * <tt>i + 1</tt> syllables, the last one counts the longer phrases.
+     */
+    public static final int PHRASE_BUCKETS = 16;
+
+    private final LongAdder documents = new LongAdder();
+
+    private final LongAdder characters = new LongAdder();
+
+    private final LongAdder tokens = new LongAdder();
+
+    private final LongAdder chunks = new LongAdder();
+
+    private final LongAdder phrases = new LongAdder();
+
+    private final LongAdder hybridPhrases = new LongAdder();
+
+    private final LongAdder fallbackSpans = new LongAdder();
+
+    private final LongAdder fallbackSyllables = new LongAdder();
+
+    private final LongAdder longPhrases = new LongAdder();
+
+    private final LongAdder latePhrases = new LongAdder();
+
+    private final LongAdder cappedPhrases = new LongAdder();
+
+    private final LongAdder lexingNanos = new LongAdder();
+
+    private final LongAdder segmentationNanos = new LongAdder();
+
+    private final LongAdder resolutionNanos = new LongAdder();
+
+    private final LongAdder mergingNanos = new LongAdder();
+
+    private final LongAdder[] chunkLatency = newAdders(LATENCY_BUCKETS);
+
+    private final LongAdder[] phraseSyllables = newAdders(PHRASE_BUCKETS);
+
+    private static LongAdder[] newAdders(final int size) {
+        final LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Records a tokenized document.
+     *
+     * @param numCharacters the length of the document
+     * @param numTokens the number of tokens emitted
+     */
+    public void onDocument(final long numCharacters, final long numTokens) {
+        documents.increment();
+        characters.add(numCharacters);
+        tokens.add(numTokens);
+    }
+
+    /**
+     * Records a tokenized chunk, the lexing time being the time not spent in
+     * the other stages.
+     *
+     * @param totalNanos the time spent on the chunk
+     * @param segmentNanos the time spent segmenting phrases
+     * @param resolveNanos the time spent resolving ambiguities
+     * @param mergeNanos the time spent merging the results
+     */
+    public void onChunk(final long totalNanos, final long segmentNanos, final long resolveNanos, final long mergeNanos) {
+        chunks.increment();
+        lexingNanos.add(Math.max(0, totalNanos - segmentNanos - resolveNanos - mergeNanos));
+        segmentationNanos.add(segmentNanos);
+        resolutionNanos.add(resolveNanos);
+        mergingNanos.add(mergeNanos);
+        final long micros = totalNanos / 1000;
+        final int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        chunkLatency[Math.min(bucket, LATENCY_BUCKETS - 1)].increment();
+    }
+
+    /**
+     * Records a segmented phrase.
+     *
+     * @param syllables the number of syllables of the phrase
+     */
+    public void onPhrase(final int syllables) {
+        phrases.increment();
+        phraseSyllables[Math.max(0, Math.min(syllables, PHRASE_BUCKETS) - 1)].increment();
+    }
+
+    /**
+     * Records a phrase segmented in the hybrid mode.
+     */
+    public void onHybridPhrase() {
+        hybridPhrases.increment();
+    }
+
+    /**
+     * Records a span of a phrase segmented on its lattice in the hybrid mode,
+     * the greedy passes disagreeing on it.
+     *
+     * @param syllables the number of syllables of the span
+     */
+    public void onFallback(final int syllables) {
+        fallbackSpans.increment();
+        fallbackSyllables.add(syllables);
+    }
+
+    /**
+     * Records a phrase segmented greedily for being longer than the budget.
+     */
+    public void onLongPhrase() {
+        longPhrases.increment();
+    }
+
+    /**
+     * Records a phrase segmented greedily for coming after the time budget of
+     * its document.
+     */
+    public void onLatePhrase() {
+        latePhrases.increment();
+    }
+
+    /**
+     * Records a phrase whose enumeration of segmentations reached the budget.
+     */
+    public void onCappedPhrase() {
+        cappedPhrases.increment();
+    }
+
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    public long getCharacters() {
+        return characters.sum();
+    }
+
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    public long getChunks() {
+        return chunks.sum();
+    }
+
+    public long getPhrases() {
+        return phrases.sum();
+    }
+
+    public long getHybridPhrases() {
+        return hybridPhrases.sum();
+    }
+
+    public long getFallbackSpans() {
+        return fallbackSpans.sum();
+    }
+
+    public long getFallbackSyllables() {
+        return fallbackSyllables.sum();
+    }
+
+    public long getLongPhrases() {
+        return longPhrases.sum();
+    }
+
+    public long getLatePhrases() {
+        return latePhrases.sum();
+    }
+
+    public long getCappedPhrases() {
+        return cappedPhrases.sum();
+    }
+
+    public long getLexingNanos() {
+        return lexingNanos.sum();
+    }
+
+    public long getSegmentationNanos() {
+        return segmentationNanos.sum();
+    }
+
+    public long getResolutionNanos() {
+        return resolutionNanos.sum();
+    }
+
+    public long getMergingNanos() {
+        return mergingNanos.sum();
+    }
+
+    /**
+     * @return the chunk latency histogram.
+     * @see #LATENCY_BUCKETS
+     */
+    public long[] getChunkLatency() {
+        return sums(chunkLatency);
+    }
+
+    /**
+     * @return the phrase length histogram.
+     * @see #PHRASE_BUCKETS
+     */
+    public long[] getPhraseSyllables() {
+        return sums(phraseSyllables);
+    }
+
+    private static long[] sums(final LongAdder[] adders) {
+        final long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.AbstractLexiconRecognizer;
+
+/**
+ * The options of a {@link VietnameseTokenizer}: the size of its chunks, the
+ * words declared by the index, how the phrases are segmented and within which
+ * budget, and whether the documents are logged or explained. The options are
+ * immutable and shared by the tokenizers of a factory or of an analyzer.
+ */
+public final class TokenizerOptions {
+
+    /**
+     * The options of a tokenizer of the default chunk size, segmenting in the
+     * accurate mode without limits, additional words, slow log nor
+     * explanation.
+     */
+    public static final TokenizerOptions DEFAULT = builder().build();
+
+    private final int chunkSize;
+
+    private final AbstractLexiconRecognizer overlay;
+
+    private final VietnameseSlowLog slowLog;
+
+    private final boolean explain;
+
+    private final SegmentationMode mode;
+
+    private final SegmentationBudget budget;
+
+    private TokenizerOptions(final Builder builder) {
+        this.chunkSize = builder.chunkSize;
+        this.overlay = builder.overlay;
+        this.slowLog = builder.slowLog;
+        this.explain = builder.explain;
+        this.mode = builder.mode;
+        this.budget = builder.budget;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of characters tokenized at once.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return the words declared by the index, or <tt>null</tt>.
+     */
+    public AbstractLexiconRecognizer getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * @return the slow log of the index, or <tt>null</tt>.
+     */
+    public VietnameseSlowLog getSlowLog() {
+        return slowLog;
+    }
+
+    /**
+     * @return whether the explanation of its segmentation is attached to the
+     *         first token of each phrase.
+     */
+    public boolean isExplain() {
+        return explain;
+    }
+
+    public SegmentationMode getMode() {
+        return mode;
+    }
+
+    public SegmentationBudget getBudget() {
+        return budget;
+    }
+
+    public static final class Builder {
+
+        private int chunkSize = VietnameseTokenizer.DEFAULT_CHUNK_SIZE;
+
+        private AbstractLexiconRecognizer overlay;
+
+        private VietnameseSlowLog slowLog;
+
+        private boolean explain;
+
+        private SegmentationMode mode = SegmentationMode.ACCURATE;
+
+        private SegmentationBudget budget = SegmentationBudget.UNLIMITED;
+
+        private Builder() {
+        }
+
+        /**
+         * @param chunkSize the number of characters tokenized at once, at
+         *        least 2 so that a chunk can hold a surrogate pair, and at most
+         *        {@link VietnameseTokenizer#MAX_CHUNK_SIZE}
+         */
+        public Builder chunkSize(final int chunkSize) {
+            if (chunkSize < 2 || chunkSize > VietnameseTokenizer.MAX_CHUNK_SIZE) {
+                throw new IllegalArgumentException(
+                        "chunk_size must be between 2 and " + VietnameseTokenizer.MAX_CHUNK_SIZE + ": " + chunkSize);
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+         */
+        public Builder overlay(final AbstractLexiconRecognizer overlay) {
+            this.overlay = overlay;
+            return this;
+        }
+
+        /**
+         * @param slowLog the slow log of the index, or <tt>null</tt>
+         */
+        public Builder slowLog(final VietnameseSlowLog slowLog) {
+            this.slowLog = slowLog;
+            return this;
+        }
+
+        public Builder explain(final boolean explain) {
+            this.explain = explain;
+            return this;
+        }
+
+        public Builder mode(final SegmentationMode mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        public Builder budget(final SegmentationBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        public TokenizerOptions build() {
+            return new TokenizerOptions(this);
+        }
+    }
+}
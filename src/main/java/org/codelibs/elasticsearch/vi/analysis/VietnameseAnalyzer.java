@@ -33,6 +33,7 @@ public class VietnameseAnalyzer extends StopwordAnalyzerBase {
 
     public static final CharArraySet VIETNAMESE_STOP_WORDS_SET;
     private final TaggedWordTokenizer taggedWordTokenizer;
+    private final TokenizerOptions options;
 
     static {
         final List<String> stopWords = Arrays.asList("bị", "bởi", "cả", "các", "cái", "cần", "càng", "chỉ", "chiếc", "cho", "chứ", "chưa",
@@ -73,13 +74,36 @@ public class VietnameseAnalyzer extends StopwordAnalyzerBase {
      * @param stopWords
      */
     public VietnameseAnalyzer(final CharArraySet stopWords) {
+        this(stopWords, AccessController.doPrivileged((PrivilegedAction<TaggedWordTokenizer>) () -> new TaggedWordTokenizer()));
+    }
+
+    /**
+     * Builds an analyzer with the given stop words and a shared tokenizer
+     * @param stopWords
+     * @param taggedWordTokenizer
+     */
+    public VietnameseAnalyzer(final CharArraySet stopWords, final TaggedWordTokenizer taggedWordTokenizer) {
+        this(stopWords, taggedWordTokenizer, TokenizerOptions.DEFAULT);
+    }
+
+    /**
+     * Builds an analyzer with the given stop words, a shared tokenizer and
+     * the options of its tokenizers, such as the additional words and the
+     * slow log of an index
+     * @param stopWords
+     * @param taggedWordTokenizer
+     * @param options the options of the tokenizers
+     */
+    public VietnameseAnalyzer(final CharArraySet stopWords, final TaggedWordTokenizer taggedWordTokenizer,
+            final TokenizerOptions options) {
         super(stopWords);
-        taggedWordTokenizer = AccessController.doPrivileged((PrivilegedAction<TaggedWordTokenizer>) () -> new TaggedWordTokenizer());
+        this.taggedWordTokenizer = taggedWordTokenizer;
+        this.options = options;
     }
 
     @Override
     protected TokenStreamComponents createComponents(final String fieldName) {
-        final Tokenizer tokenizer = new VietnameseTokenizer(this.taggedWordTokenizer);
+        final Tokenizer tokenizer = new VietnameseTokenizer(this.taggedWordTokenizer, options);
         TokenStream tokenStream = new LowerCaseFilter(tokenizer);
         tokenStream = new StopFilter(tokenStream, stopwords);
         return new TokenStreamComponents(tokenizer, tokenStream);
@@ -14,8 +14,12 @@
 
 package org.codelibs.elasticsearch.vi.analysis;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.analysis.CharArraySet;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractIndexAnalyzerProvider;
 import org.elasticsearch.index.analysis.Analysis;
@@ -27,9 +31,28 @@ public class VietnameseAnalyzerProvider extends AbstractIndexAnalyzerProvider<Vi
     private final VietnameseAnalyzer analyzer;
 
     public VietnameseAnalyzerProvider(final IndexSettings indexSettings, final Environment environment, final String name,
-            final Settings settings) {
+            final Settings settings, final VietnameseModelRegistry modelRegistry) {
         super(indexSettings, name, settings);
-        analyzer = new VietnameseAnalyzer(Analysis.parseStopWords(environment, settings, VietnameseAnalyzer.getDefaultStopSet(), true));
+        final Index index = indexSettings.getIndex();
+        final TaggedWordTokenizer taggedWordTokenizer = modelRegistry.acquire(index, TaggedWordTokenizer.DEFAULT_MODEL);
+        final CharArraySet stopWords = Analysis.parseStopWords(environment, settings, VietnameseAnalyzer.getDefaultStopSet(), true);
+        final TokenizerOptions options = TokenizerOptions.builder()
+                .overlay(VietnameseTokenizerFactory.parseUserWords(environment, settings, taggedWordTokenizer))
+                .slowLog(new VietnameseSlowLog(indexSettings))
+                .build();
+        // the analyzer is closed with the analyzers of its index service
+        modelRegistry.retain(index);
+        analyzer = new VietnameseAnalyzer(stopWords, taggedWordTokenizer, options) {
+            private final AtomicBoolean closed = new AtomicBoolean();
+
+            @Override
+            public void close() {
+                super.close();
+                if (closed.compareAndSet(false, true)) {
+                    modelRegistry.release(index);
+                }
+            }
+        };
     }
 
     @Override
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.indices.breaker.BreakerSettings;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+
+/**
+ * Registers the <tt>vi_analysis</tt> circuit breaker, which accounts the
+ * models and the caches of the plugin, and hands it to the model registry.
+ * The breaker is a child of the parent breaker, so the memory of the plugin
+ * also counts in the total limit of the node.
+ */
+public class VietnameseBreakerService extends AbstractLifecycleComponent {
+
+    public static final String BREAKER_NAME = "vi_analysis";
+
+    public static final Setting<ByteSizeValue> BREAKER_LIMIT_SETTING = Setting.memorySizeSetting("vi.breaker.limit", "10%",
+            Property.NodeScope);
+
+    @Inject
+    public VietnameseBreakerService(final Settings settings, final CircuitBreakerService circuitBreakerService,
+            final VietnameseModelRegistry modelRegistry) {
+        super(settings);
+        circuitBreakerService.registerBreaker(
+                new BreakerSettings(BREAKER_NAME, BREAKER_LIMIT_SETTING.get(settings).getBytes(), 1.0, CircuitBreaker.Type.MEMORY));
+        modelRegistry.setCircuitBreaker(circuitBreakerService.getBreaker(BREAKER_NAME));
+    }
+
+    @Override
+    protected void doStart() {
+    }
+
+    @Override
+    protected void doStop() {
+    }
+
+    @Override
+    protected void doClose() {
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.io.IOException;
+import java.text.Normalizer;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.AttributeSource;
+import org.codelibs.elasticsearch.vi.nlp.utils.CaseConverter;
+
+/**
+ * Removes the diacritics of the Vietnamese letters, <tt>đ</tt> and
+ * <tt>Đ</tt> being folded to <tt>d</tt> and <tt>D</tt>. The case is kept.
+ * <p>
+ * The letters are folded with a table indexed by character, built once from
+ * the letters of {@link CaseConverter}. Combining diacritics, as found in
+ * decomposed texts, are removed. The term is folded in place, and the
+ * original token is kept in a copy of the attributes reused from token to
+ * token, so nothing is allocated per token.
+ */
+public final class VietnameseFoldingFilter extends TokenFilter {
+
+    /**
+     * The mark of the characters removed from the terms.
+     */
+    private static final char REMOVED = '\uFFFF';
+
+    private static final char[] FOLDING = buildFolding();
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+
+    private final boolean preserveOriginal;
+
+    /**
+     * The attributes of the original token, created on the first folded
+     * token.
+     */
+    private AttributeSource original;
+
+    /**
+     * Whether the original token is to be emitted after the folded one.
+     */
+    private boolean pending = false;
+
+    public VietnameseFoldingFilter(final TokenStream input) {
+        this(input, false);
+    }
+
+    /**
+     * @param input the token stream to fold
+     * @param preserveOriginal <tt>true</tt> to emit the original term too, at
+     *        the same position, when it is folded
+     */
+    public VietnameseFoldingFilter(final TokenStream input, final boolean preserveOriginal) {
+        super(input);
+        this.preserveOriginal = preserveOriginal;
+    }
+
+    private static char[] buildFolding() {
+        final char[] folding = new char[0x1F00];
+        for (int c = 0; c < folding.length; c++) {
+            folding[c] = (char) c;
+        }
+        for (final char c : CaseConverter.getCharacters()) {
+            folding[c] = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+        }
+        folding['\u0111'] = 'd';
+        folding['\u0110'] = 'D';
+        // the combining diacritical marks
+        for (int c = 0x300; c < 0x370; c++) {
+            folding[c] = REMOVED;
+        }
+        return folding;
+    }
+
+    /**
+     * @return the folded character, or {@link #REMOVED}.
+     */
+    private static char fold(final char c) {
+        return c < FOLDING.length ? FOLDING[c] : c;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (pending) {
+            original.copyTo(this);
+            posIncrAtt.setPositionIncrement(0);
+            pending = false;
+            return true;
+        }
+        if (!input.incrementToken()) {
+            return false;
+        }
+        final char[] buffer = termAtt.buffer();
+        final int length = termAtt.length();
+        int i = 0;
+        while (i < length && fold(buffer[i]) == buffer[i]) {
+            i++;
+        }
+        if (i == length) {
+            return true;
+        }
+        if (preserveOriginal) {
+            if (original == null) {
+                original = cloneAttributes();
+            } else {
+                copyTo(original);
+            }
+            pending = true;
+        }
+        int j = i;
+        for (; i < length; i++) {
+            final char folded = fold(buffer[i]);
+            if (folded != REMOVED) {
+                buffer[j++] = folded;
+            }
+        }
+        termAtt.setLength(j);
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        pending = false;
+    }
+}
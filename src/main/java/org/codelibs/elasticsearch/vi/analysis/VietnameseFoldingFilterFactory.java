@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
+import org.elasticsearch.index.analysis.MultiTermAwareComponent;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
+
+/**
+ * Builds the <tt>vi_folding</tt> token filter.
+ */
+public class VietnameseFoldingFilterFactory extends AbstractTokenFilterFactory implements MultiTermAwareComponent {
+    private final boolean preserveOriginal;
+
+    public VietnameseFoldingFilterFactory(final IndexSettings indexSettings, final Environment environment, final String name,
+            final Settings settings) {
+        super(indexSettings, name, settings);
+        preserveOriginal = settings.getAsBoolean("preserve_original", false);
+    }
+
+    @Override
+    public TokenStream create(final TokenStream tokenStream) {
+        return new VietnameseFoldingFilter(tokenStream, preserveOriginal);
+    }
+
+    @Override
+    public Object getMultiTermComponent() {
+        if (!preserveOriginal) {
+            return this;
+        }
+        // a multi term query is folded into a single term
+        return new TokenFilterFactory() {
+            @Override
+            public String name() {
+                return VietnameseFoldingFilterFactory.this.name();
+            }
+
+            @Override
+            public TokenStream create(final TokenStream tokenStream) {
+                return new VietnameseFoldingFilter(tokenStream);
+            }
+        };
+    }
+}
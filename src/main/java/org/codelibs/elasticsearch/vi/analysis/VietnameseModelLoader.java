@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * Loads the default model in the background when the node starts, then runs a
+ * warmup corpus through it so the hot paths are compiled before the first
+ * requests.
+ * <p>
+ * The loading holds the lock of the model registry, so an index created
+ * meanwhile waits for the model instead of loading it a second time. The
+ * warmup does not hold any lock and gives up when the node stops.
+ */
+public class VietnameseModelLoader extends AbstractLifecycleComponent {
+
+    public static final Setting<Boolean> PRELOAD_SETTING = Setting.boolSetting("vi.preload", true, Property.NodeScope);
+
+    public static final Setting<String> WARMUP_PATH_SETTING = Setting.simpleString("vi.warmup.path", Property.NodeScope);
+
+    public static final Setting<Integer> WARMUP_MAX_CHARS_SETTING =
+            Setting.intSetting("vi.warmup.max_chars", 20000, 0, Property.NodeScope);
+
+    /**
+     * The corpus bundled with the plugin, used when no warmup file is set.
+     */
+    static final String DEFAULT_WARMUP_CORPUS = "/training-vn.txt";
+
+    private final ThreadPool threadPool;
+
+    private final VietnameseModelRegistry modelRegistry;
+
+    /**
+     * @param breakerService injected so that the breaker of the registry is
+     *        set before any model is loaded
+     */
+    @Inject
+    public VietnameseModelLoader(final Settings settings, final ThreadPool threadPool,
+            final VietnameseModelRegistry modelRegistry, final VietnameseBreakerService breakerService) {
+        super(settings);
+        this.threadPool = threadPool;
+        this.modelRegistry = modelRegistry;
+    }
+
+    @Override
+    protected void doStart() {
+        if (!PRELOAD_SETTING.get(settings)) {
+            return;
+        }
+        threadPool.generic().execute(new AbstractRunnable() {
+            @Override
+            protected void doRun() throws Exception {
+                final TaggedWordTokenizer tokenizer = modelRegistry.preload(TaggedWordTokenizer.DEFAULT_MODEL);
+                if (tokenizer != null) {
+                    warmup(tokenizer);
+                }
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+                logger.warn("Failed to preload the Vietnamese model, it will be loaded by the first index using it", e);
+            }
+        });
+    }
+
+    private void warmup(final TaggedWordTokenizer taggedWordTokenizer) throws IOException {
+        final int maxChars = WARMUP_MAX_CHARS_SETTING.get(settings);
+        if (maxChars == 0) {
+            return;
+        }
+        final String text = readCorpus(maxChars);
+        final long startTime = System.nanoTime();
+        int tokens = 0;
+        try (Tokenizer tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.DEFAULT)) {
+            tokenizer.setReader(new StringReader(text));
+            tokenizer.reset();
+            while (lifecycle.started() && tokenizer.incrementToken()) {
+                tokens++;
+            }
+            tokenizer.end();
+        }
+        logger.info("Warmed up the Vietnamese model with {} characters and {} tokens in {}", text.length(), tokens,
+                TimeValue.timeValueNanos(System.nanoTime() - startTime));
+    }
+
+    /**
+     * @return the first characters of the warmup corpus.
+     */
+    private String readCorpus(final int maxChars) throws IOException {
+        final String path = WARMUP_PATH_SETTING.get(settings);
+        final InputStream in = path.isEmpty() ? VietnameseModelLoader.class.getResourceAsStream(DEFAULT_WARMUP_CORPUS)
+                : Files.newInputStream(new Environment(settings).configFile().resolve(path));
+        if (in == null) {
+            throw new IllegalStateException("Warmup corpus not found: " + DEFAULT_WARMUP_CORPUS);
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            final char[] buffer = new char[maxChars];
+            int length = 0;
+            int n;
+            while (length < maxChars && (n = reader.read(buffer, length, maxChars - length)) != -1) {
+                length += n;
+            }
+            return new String(buffer, 0, length);
+        }
+    }
+
+    @Override
+    protected void doStop() {
+    }
+
+    @Override
+    protected void doClose() {
+    }
+}
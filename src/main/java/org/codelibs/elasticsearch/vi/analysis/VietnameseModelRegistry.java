@@ -0,0 +1,321 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.io.Closeable;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.Index;
+
+/**
+ * The models loaded on a node.
+ * <p>
+ * A model is identified by the location of its properties and by its
+ * <tt>modelVersion</tt> property. It is loaded when the node starts or the
+ * first time an index acquires it, shared by all the analysis components of
+ * all the indices using it, and dropped when the last index holding a
+ * reference is removed from the node, unless it has been preloaded. An index
+ * acquiring a model being loaded waits for the end of the loading. The
+ * estimated size of the models is accounted to the <tt>vi_analysis</tt>
+ * circuit breaker.
+ */
+public class VietnameseModelRegistry implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(VietnameseModelRegistry.class);
+
+    /**
+     * Records the work of each lexer rule of the models, see
+     * {@link org.codelibs.elasticsearch.vi.nlp.tokenizer.LexerStats}.
+     */
+    public static final Setting<Boolean> LEXER_STATS_SETTING =
+            Setting.boolSetting("vi.lexer.stats", false, Property.NodeScope, Property.Dynamic);
+
+    private final Map<String, ModelReference> models = new HashMap<>();
+
+    /**
+     * The loaded models by the location of their properties, so that the
+     * properties are only read to load a model.
+     */
+    private final Map<String, ModelReference> locations = new HashMap<>();
+
+    private final Settings settings;
+
+    private final VietnameseUserDictionary userDictionary;
+
+    private volatile CircuitBreaker breaker = new NoopCircuitBreaker(VietnameseBreakerService.BREAKER_NAME);
+
+    private final Map<Index, IndexReferences> indexReferences = new HashMap<>();
+
+    private final TokenizerMetrics metrics = new TokenizerMetrics();
+
+    private boolean closed = false;
+
+    private boolean lexerStats;
+
+    public VietnameseModelRegistry() {
+        this(Settings.EMPTY, null);
+    }
+
+    /**
+     * @param settings the node settings
+     * @param userDictionary the user dictionary shared by all the models, or
+     *        <tt>null</tt>
+     */
+    public VietnameseModelRegistry(final Settings settings, final VietnameseUserDictionary userDictionary) {
+        this.settings = settings;
+        this.userDictionary = userDictionary;
+        lexerStats = LEXER_STATS_SETTING.get(settings);
+    }
+
+    /**
+     * Acquires a model for an index, loading it if needed. An index holds one
+     * reference to a model however many of its analysis components use it,
+     * released with the last index service of the index, see
+     * {@link #retain(Index)}. The analysis components built for
+     * a request, on the settings of the <tt>_na_</tt> index, do not belong to
+     * any index: the model is then kept loaded as if it had been preloaded.
+     *
+     * @param index the index using the model
+     * @param location the location of the properties of the model
+     * @return the tokenizer of the model
+     */
+    public synchronized TaggedWordTokenizer acquire(final Index index, final String location) {
+        final ModelReference model = load(location);
+        if (IndexMetaData.INDEX_UUID_NA_VALUE.equals(index.getUUID())) {
+            pin(model);
+        } else if (indexReferences.computeIfAbsent(index, i -> new IndexReferences()).models.add(model)) {
+            model.refCount++;
+        }
+        return model.tokenizer;
+    }
+
+    /**
+     * Records that an index service of an index holds the references of the
+     * index until it calls {@link #release(Index)}. Every index service of
+     * the node builds a <tt>vi_analyzer</tt>, the analyzers of the plugin
+     * being built for all the indices, and closes it with its analyzers. The
+     * analyzer retains the references when it is built and releases them
+     * when it is closed, so the services which fire no index event, such as
+     * those built to verify the metadata of an index, release them too.
+     *
+     * @param index the index
+     */
+    public synchronized void retain(final Index index) {
+        if (!IndexMetaData.INDEX_UUID_NA_VALUE.equals(index.getUUID())) {
+            indexReferences.computeIfAbsent(index, i -> new IndexReferences()).services++;
+        }
+    }
+
+    /**
+     * Loads a model ahead of the indices, which then find it loaded. The
+     * model is kept loaded until the registry is closed.
+     *
+     * @param location the location of the properties of the model
+     * @return the tokenizer of the model, or <tt>null</tt> if the registry is
+     *         closed
+     */
+    public synchronized TaggedWordTokenizer preload(final String location) {
+        if (closed) {
+            return null;
+        }
+        final ModelReference model = load(location);
+        pin(model);
+        return model.tokenizer;
+    }
+
+    private static void pin(final ModelReference model) {
+        if (!model.pinned) {
+            model.pinned = true;
+            model.refCount++;
+        }
+    }
+
+    private ModelReference load(final String location) {
+        ModelReference model = locations.get(location);
+        if (model == null) {
+            final Properties properties = TaggedWordTokenizer.loadProperties(location);
+            final String key = location + "#" + properties.getProperty("modelVersion", "0");
+            logger.info("Loading model {}", key);
+            final SegmentationCache segmentationCache = SegmentationCache.build(settings, breaker);
+            final TaggedWordTokenizer tokenizer = AccessController.doPrivileged(
+                    (PrivilegedAction<TaggedWordTokenizer>) () -> new TaggedWordTokenizer(properties, userDictionary, segmentationCache,
+                            metrics));
+            tokenizer.getLexer().setStatsEnabled(lexerStats);
+            final long ramBytesUsed = tokenizer.ramBytesUsed();
+            // fails the index rather than the node when there is no room for the model
+            breaker.addEstimateBytesAndMaybeBreak(ramBytesUsed, "<vi_model " + key + ">");
+            model = new ModelReference(key, location, tokenizer, ramBytesUsed);
+            if (userDictionary != null && segmentationCache != null) {
+                // the cached segmentations are stale once the dictionary changes
+                model.reloadListener = segmentationCache::clear;
+                userDictionary.addReloadListener(model.reloadListener);
+            }
+            models.put(key, model);
+            locations.put(location, model);
+        }
+        return model;
+    }
+
+    /**
+     * Records that an index service of an index has been closed. Once no
+     * service of the index is left, the models acquired by the index are
+     * released; a temporary service closed while the index itself lives on
+     * the node releases nothing. A model without any reference left is
+     * removed from the registry.
+     *
+     * @param index the index
+     */
+    public synchronized void release(final Index index) {
+        final IndexReferences references = indexReferences.get(index);
+        if (references == null || --references.services > 0) {
+            return;
+        }
+        indexReferences.remove(index);
+        for (final ModelReference model : references.models) {
+            model.refCount--;
+            if (model.refCount == 0) {
+                logger.info("Unloading model {}", model.key);
+                models.remove(model.key);
+                locations.remove(model.location);
+                unload(model);
+            }
+        }
+    }
+
+    private void unload(final ModelReference model) {
+        if (model.reloadListener != null) {
+            userDictionary.removeReloadListener(model.reloadListener);
+        }
+        final SegmentationCache segmentationCache = model.tokenizer.getSegmentationCache();
+        if (segmentationCache != null) {
+            segmentationCache.clear();
+        }
+        breaker.addWithoutBreaking(-model.ramBytesUsed);
+    }
+
+    /**
+     * Sets the breaker the models and their caches are accounted to. The
+     * breaker must be set before any model is loaded.
+     *
+     * @param breaker a circuit breaker
+     */
+    public void setCircuitBreaker(final CircuitBreaker breaker) {
+        this.breaker = breaker;
+    }
+
+    /**
+     * Starts or stops recording the work of the lexer rules of the models,
+     * loaded or to be loaded.
+     */
+    public synchronized void setLexerStats(final boolean enabled) {
+        lexerStats = enabled;
+        for (final ModelReference model : models.values()) {
+            model.tokenizer.getLexer().setStatsEnabled(enabled);
+        }
+    }
+
+    /**
+     * @return the counters of the work of all the models.
+     */
+    public TokenizerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the estimated size of the loaded models and of their caches in
+     *         bytes.
+     */
+    public synchronized long ramBytesUsed() {
+        long size = 0;
+        for (final ModelReference model : models.values()) {
+            size += model.ramBytesUsed;
+            final SegmentationCache segmentationCache = model.tokenizer.getSegmentationCache();
+            if (segmentationCache != null) {
+                size += segmentationCache.ramBytesUsed();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the tokenizers of the loaded models by model key.
+     */
+    public synchronized Map<String, TaggedWordTokenizer> getModels() {
+        final Map<String, TaggedWordTokenizer> tokenizers = new HashMap<>();
+        for (final ModelReference model : models.values()) {
+            tokenizers.put(model.key, model.tokenizer);
+        }
+        return tokenizers;
+    }
+
+    /**
+     * @return the number of loaded models.
+     */
+    public synchronized int size() {
+        return models.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (final ModelReference model : models.values()) {
+            unload(model);
+        }
+        models.clear();
+        locations.clear();
+        indexReferences.clear();
+    }
+
+    /**
+     * The models acquired by an index and the number of its index services
+     * on the node.
+     */
+    private static final class IndexReferences {
+        private final Set<ModelReference> models = new HashSet<>();
+        private int services = 0;
+    }
+
+    private static final class ModelReference {
+        private final String key;
+        private final String location;
+        private final TaggedWordTokenizer tokenizer;
+        private final long ramBytesUsed;
+        private int refCount = 0;
+        private boolean pinned = false;
+        private Runnable reloadListener;
+
+        private ModelReference(final String key, final String location, final TaggedWordTokenizer tokenizer,
+                final long ramBytesUsed) {
+            this.key = key;
+            this.location = location;
+            this.tokenizer = tokenizer;
+            this.ramBytesUsed = ramBytesUsed;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.analysis.charfilter.BaseCharFilter;
+import org.codelibs.elasticsearch.vi.nlp.utils.CaseConverter;
+
+/**
+ * Converts the Vietnamese letters to the precomposed orthography of the
+ * lexicon:
+ * <ul>
+ * <li>a vowel followed by combining diacritics (decomposed Unicode, in any
+ * order) is composed, as well as a precomposed vowel followed by the missing
+ * diacritic, e.g. <tt>â</tt> and a combining acute accent;</li>
+ * <li>optionally, the text of a legacy encoding read as Windows-1252 is
+ * decoded: TCVN3 (one character per letter) or VNI (a base letter followed by
+ * a diacritic character);</li>
+ * <li>the tone marks are moved to the vowel the lexicon expects them on, with
+ * the rules of the model, e.g. <tt>hòa</tt> becomes <tt>hoà</tt>.</li>
+ * </ul>
+ * A vowel is read as an index into tables built once, the diacritics which
+ * follow it are added as long as the result is a Vietnamese letter, and the
+ * letter is looked up in a composition table. The offsets of the letters
+ * made of several characters are corrected.
+ */
+public class VietnameseNormalizeCharFilter extends BaseCharFilter {
+
+    /**
+     * The legacy encodings which can be decoded.
+     */
+    public enum LegacyEncoding {
+        NONE, VNI, TCVN3;
+
+        public static LegacyEncoding parse(final String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (final IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown legacy encoding [" + value + "], expected one of [none, vni, tcvn3]");
+            }
+        }
+    }
+
+    private static final String VOWELS = "aeiouyAEIOUY";
+
+    // the shapes of a vowel
+    private static final int CIRCUMFLEX = 1;
+    private static final int BREVE = 2;
+    private static final int HORN = 3;
+
+    private static final int SHAPES = 4;
+
+    // the tones of a vowel
+    private static final int GRAVE = 1;
+    private static final int ACUTE = 2;
+    private static final int TILDE = 3;
+    private static final int HOOK = 4;
+    private static final int DOT = 5;
+
+    private static final int TONES = 6;
+
+    /**
+     * The letters, indexed by <tt>(vowel * SHAPES + shape) * TONES + tone</tt>,
+     * or <tt>0</tt>.
+     */
+    private static final char[] COMPOSITION = new char[VOWELS.length() * SHAPES * TONES];
+
+    /**
+     * The vowel, the shape and the tone of the letters, packed as
+     * <tt>(vowel + 1) &lt;&lt; 6 | shape &lt;&lt; 3 | tone</tt>, or <tt>0</tt>.
+     */
+    private static final short[] DECOMPOSITION = new short[0x1F00];
+
+    /**
+     * The shape and the tone added by the combining diacritics from
+     * <tt>U+0300</tt>, packed as <tt>shape &lt;&lt; 3 | tone</tt>, or
+     * <tt>0</tt>.
+     */
+    private static final byte[] COMBINING = new byte[0x50];
+
+    /**
+     * The letters of TCVN3 from <tt>U+00A1</tt>, or <tt>0</tt>.
+     */
+    private static final char[] TCVN3 = ("ĂÂÊÔƠƯĐăâêôơưđ\0"
+            + "\0\0\0\0\0àảãáạ\0ằẳẵắ\0"
+            + "\0\0\0\0\0\0ặầẩẫấậè\0ẻẽ"
+            + "éẹềểễếệìỉ\0\0\0ĩíịò"
+            + "\0ỏõóọồổỗốộờởỡớợù"
+            + "\0ủũúụừửữứựỳỷỹýỵ").toCharArray();
+
+    /**
+     * The letters of VNI written with one character from <tt>U+00C0</tt>, or
+     * <tt>0</tt>.
+     */
+    private static final char[] VNI_LETTERS = new char[0x40];
+
+    /**
+     * The shape and the tone added by the diacritic characters of VNI from
+     * <tt>U+00C0</tt>, packed as <tt>shape &lt;&lt; 3 | tone</tt>, or
+     * <tt>0</tt>.
+     */
+    private static final byte[] VNI_MARKS = new byte[0x40];
+
+    static {
+        COMBINING[0x00] = GRAVE;
+        COMBINING[0x01] = ACUTE;
+        COMBINING[0x02] = CIRCUMFLEX << 3;
+        COMBINING[0x03] = TILDE;
+        COMBINING[0x06] = BREVE << 3;
+        COMBINING[0x09] = HOOK;
+        COMBINING[0x1B] = HORN << 3;
+        COMBINING[0x23] = DOT;
+        COMBINING[0x40] = GRAVE;
+        COMBINING[0x41] = ACUTE;
+
+        final StringBuilder letters = new StringBuilder(VOWELS);
+        letters.append(CaseConverter.getCharacters());
+        for (int i = 0; i < letters.length(); i++) {
+            final char letter = letters.charAt(i);
+            final String decomposed = Normalizer.normalize(String.valueOf(letter), Normalizer.Form.NFD);
+            final int vowel = VOWELS.indexOf(decomposed.charAt(0));
+            if (vowel < 0) {
+                continue;
+            }
+            int shape = 0;
+            int tone = 0;
+            for (int j = 1; j < decomposed.length(); j++) {
+                final int mark = combining(decomposed.charAt(j));
+                shape |= mark >> 3;
+                tone |= mark & 7;
+            }
+            COMPOSITION[(vowel * SHAPES + shape) * TONES + tone] = letter;
+            DECOMPOSITION[letter] = (short) ((vowel + 1) << 6 | shape << 3 | tone);
+        }
+
+        final String vniLetters = "ôơöưñđæỉóĩòị"
+                + "ÔƠÖƯÑĐÆỈÓĨÒỊ";
+        for (int i = 0; i < vniLetters.length(); i += 2) {
+            VNI_LETTERS[vniLetters.charAt(i) - 0xC0] = vniLetters.charAt(i + 1);
+        }
+        // the circumflex, breve and tone marks, lowercase then uppercase
+        addVniMarks("âàáãåä", CIRCUMFLEX);
+        addVniMarks("ÂÀÁÃÅÄ", CIRCUMFLEX);
+        addVniMarks("êèéüúë", BREVE);
+        addVniMarks("ÊÈÉÜÚË", BREVE);
+        addVniMarks("\0øùõûï", 0);
+        addVniMarks("\0ØÙÕÛÏ", 0);
+    }
+
+    /**
+     * @param marks the marks of the tones, in the order of the constants
+     */
+    private static void addVniMarks(final String marks, final int shape) {
+        for (int tone = 0; tone < marks.length(); tone++) {
+            if (marks.charAt(tone) != 0) {
+                VNI_MARKS[marks.charAt(tone) - 0xC0] = (byte) (shape << 3 | tone);
+            }
+        }
+    }
+
+    private static int combining(final int c) {
+        return c >= 0x300 && c < 0x300 + COMBINING.length ? COMBINING[c - 0x300] : 0;
+    }
+
+    private final LegacyEncoding legacyEncoding;
+
+    private final AccentRules accentRules;
+
+    private final char[] buffer = new char[1024];
+    private int bufferPos = 0;
+    private int bufferLength = 0;
+
+    /**
+     * The number of characters produced.
+     */
+    private int produced = 0;
+
+    /**
+     * The number of input characters minus the number of characters produced.
+     */
+    private int cumulativeDiff = 0;
+
+    /**
+     * The character produced ahead by a rule lookup, <tt>-1</tt> at the end
+     * of the input, or <tt>-2</tt>.
+     */
+    private int pending = -2;
+
+    /**
+     * @param in the input
+     * @param legacyEncoding the legacy encoding to decode
+     * @param accentRules the rules moving the tone marks, or <tt>null</tt>
+     */
+    public VietnameseNormalizeCharFilter(final Reader in, final LegacyEncoding legacyEncoding, final AccentRules accentRules) {
+        super(in);
+        this.legacyEncoding = legacyEncoding;
+        this.accentRules = accentRules;
+    }
+
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            final int c = nextChar();
+            if (c < 0) {
+                break;
+            }
+            cbuf[off + n++] = (char) c;
+        }
+        return n == 0 && len > 0 ? -1 : n;
+    }
+
+    /**
+     * @return the next character, the tone marks being moved, or <tt>-1</tt>.
+     */
+    private int nextChar() throws IOException {
+        int c = pending != -2 ? pending : nextLetter();
+        pending = -2;
+        if (c >= 0 && accentRules != null && accentRules.isFirst(c)) {
+            int next = nextLetter();
+            if (next >= 0) {
+                final int pair = accentRules.apply(c, next);
+                if (pair >= 0) {
+                    c = pair >>> 16;
+                    next = pair & 0xFFFF;
+                }
+            }
+            pending = next;
+        }
+        return c;
+    }
+
+    /**
+     * @return the next letter, or <tt>-1</tt>.
+     */
+    private int nextLetter() throws IOException {
+        int c = readInput();
+        if (c < 0) {
+            return -1;
+        }
+        if (legacyEncoding == LegacyEncoding.TCVN3) {
+            if (c >= 0xA1 && c < 0xA1 + TCVN3.length && TCVN3[c - 0xA1] != 0) {
+                c = TCVN3[c - 0xA1];
+            }
+        } else if (legacyEncoding == LegacyEncoding.VNI) {
+            if (c >= 0xC0 && c < 0x100 && VNI_LETTERS[c - 0xC0] != 0) {
+                c = VNI_LETTERS[c - 0xC0];
+            }
+        }
+        final int code = c < DECOMPOSITION.length ? DECOMPOSITION[c] : 0;
+        if (code == 0) {
+            produced++;
+            return c;
+        }
+        final int vowel = (code >> 6) - 1;
+        int shape = code >> 3 & 7;
+        int tone = code & 7;
+        int consumed = 1;
+        while (true) {
+            final int next = peekInput();
+            int mark = combining(next);
+            if (mark == 0 && legacyEncoding == LegacyEncoding.VNI && next >= 0xC0 && next < 0x100) {
+                mark = VNI_MARKS[next - 0xC0];
+            }
+            if (mark == 0) {
+                break;
+            }
+            final int markShape = mark >> 3;
+            final int markTone = mark & 7;
+            if ((markShape != 0 && shape != 0) || (markTone != 0 && tone != 0)) {
+                break;
+            }
+            final int newShape = shape | markShape;
+            final int newTone = tone | markTone;
+            if (COMPOSITION[(vowel * SHAPES + newShape) * TONES + newTone] == 0) {
+                break;
+            }
+            shape = newShape;
+            tone = newTone;
+            bufferPos++;
+            consumed++;
+        }
+        produced++;
+        if (consumed > 1) {
+            cumulativeDiff += consumed - 1;
+            addOffCorrectMap(produced, cumulativeDiff);
+        }
+        return COMPOSITION[(vowel * SHAPES + shape) * TONES + tone];
+    }
+
+    private int readInput() throws IOException {
+        final int c = peekInput();
+        if (c >= 0) {
+            bufferPos++;
+        }
+        return c;
+    }
+
+    private int peekInput() throws IOException {
+        if (bufferPos == bufferLength) {
+            bufferPos = 0;
+            bufferLength = Math.max(0, input.read(buffer, 0, buffer.length));
+            if (bufferLength == 0) {
+                return -1;
+            }
+        }
+        return buffer[bufferPos];
+    }
+
+    /**
+     * The rules moving the tone marks between two letters, such as
+     * <tt>òa</tt> to <tt>oà</tt>.
+     */
+    public static final class AccentRules {
+
+        private static AccentRules defaultRules;
+
+        /**
+         * The pairs of letters, as <tt>first &lt;&lt; 16 | second</tt>, sorted.
+         */
+        private final int[] from;
+
+        /**
+         * The replacements of the pairs.
+         */
+        private final int[] to;
+
+        /**
+         * Whether a letter is the first of a pair.
+         */
+        private final boolean[] first = new boolean[DECOMPOSITION.length];
+
+        /**
+         * @param rules the rules, one <tt>from to</tt> pair of two letters
+         *        per line
+         */
+        AccentRules(final List<String> rules) {
+            final long[] pairs = new long[rules.size()];
+            int n = 0;
+            for (final String rule : rules) {
+                final String[] s = rule.trim().split("\\s+");
+                if (s.length == 2 && s[0].length() == 2 && s[1].length() == 2 && s[0].charAt(0) < first.length) {
+                    pairs[n++] = (long) (s[0].charAt(0) << 16 | s[0].charAt(1)) << 32 | (s[1].charAt(0) << 16 | s[1].charAt(1));
+                }
+            }
+            Arrays.sort(pairs, 0, n);
+            from = new int[n];
+            to = new int[n];
+            int size = 0;
+            for (int i = 0; i < n; i++) {
+                final int key = (int) (pairs[i] >>> 32);
+                if (size == 0 || from[size - 1] != key) {
+                    from[size] = key;
+                    to[size] = (int) pairs[i];
+                    first[key >>> 16] = true;
+                    size++;
+                }
+            }
+        }
+
+        /**
+         * @return the rules of the bundled model.
+         */
+        public static synchronized AccentRules getDefault() {
+            if (defaultRules == null) {
+                final String location = TaggedWordTokenizer.loadProperties(TaggedWordTokenizer.DEFAULT_MODEL)
+                        .getProperty("normalizationRules");
+                try (InputStream in = AccentRules.class.getResourceAsStream(location)) {
+                    if (in == null) {
+                        throw new IllegalArgumentException("Normalization rules not found: " + location);
+                    }
+                    defaultRules = new AccentRules(IOUtils.readLines(in, StandardCharsets.UTF_8.name()));
+                } catch (final IOException e) {
+                    throw new UncheckedIOException("Failed to load " + location, e);
+                }
+            }
+            return defaultRules;
+        }
+
+        boolean isFirst(final int c) {
+            return c < first.length && first[c];
+        }
+
+        /**
+         * @return the replacement of the pair as <tt>first &lt;&lt; 16 |
+         *         second</tt>, or <tt>-1</tt>.
+         */
+        int apply(final int c1, final int c2) {
+            final int i = Arrays.binarySearch(from, 0, from.length, c1 << 16 | c2);
+            return i >= 0 ? to[i] : -1;
+        }
+    }
+}
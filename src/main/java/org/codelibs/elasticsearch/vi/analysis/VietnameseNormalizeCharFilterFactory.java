@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.io.Reader;
+
+import org.codelibs.elasticsearch.vi.analysis.VietnameseNormalizeCharFilter.AccentRules;
+import org.codelibs.elasticsearch.vi.analysis.VietnameseNormalizeCharFilter.LegacyEncoding;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractCharFilterFactory;
+import org.elasticsearch.index.analysis.MultiTermAwareComponent;
+
+/**
+ * Builds the <tt>vi_normalize</tt> char filter.
+ */
+public class VietnameseNormalizeCharFilterFactory extends AbstractCharFilterFactory implements MultiTermAwareComponent {
+    private final LegacyEncoding legacyEncoding;
+    private final AccentRules accentRules;
+
+    public VietnameseNormalizeCharFilterFactory(final IndexSettings indexSettings, final Environment environment, final String name,
+            final Settings settings) {
+        super(indexSettings, name);
+        legacyEncoding = LegacyEncoding.parse(settings.get("legacy_encoding", "none"));
+        accentRules = settings.getAsBoolean("accent_rules", true) ? AccentRules.getDefault() : null;
+    }
+
+    @Override
+    public Reader create(final Reader reader) {
+        return new VietnameseNormalizeCharFilter(reader, legacyEncoding, accentRules);
+    }
+
+    @Override
+    public Object getMultiTermComponent() {
+        return this;
+    }
+}
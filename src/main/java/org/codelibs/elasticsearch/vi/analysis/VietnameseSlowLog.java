@@ -0,0 +1,175 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.AbstractScopedSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.IndexSettings;
+
+/**
+ * Logs the documents which take too long to tokenize, like the search and
+ * indexing slow logs of Elasticsearch.
+ * <p>
+ * The thresholds are dynamic index settings, all disabled by default. The
+ * tokenizers time the stages of each chunk for the node statistics in any
+ * case; once a threshold is set, each document is also traced as a whole and
+ * logged if it exceeds the threshold, with the time spent in each stage and
+ * the phrase that took the longest to segment.
+ */
+public class VietnameseSlowLog {
+
+    public static final String SLOWLOG_PREFIX = "index.vi.slowlog";
+
+    public static final Setting<TimeValue> THRESHOLD_WARN_SETTING = thresholdSetting("warn");
+
+    public static final Setting<TimeValue> THRESHOLD_INFO_SETTING = thresholdSetting("info");
+
+    public static final Setting<TimeValue> THRESHOLD_DEBUG_SETTING = thresholdSetting("debug");
+
+    public static final Setting<TimeValue> THRESHOLD_TRACE_SETTING = thresholdSetting("trace");
+
+    public static final Setting<Integer> PHRASE_MAX_LENGTH_SETTING =
+            Setting.intSetting(SLOWLOG_PREFIX + ".phrase_max_length", 100, 0, Property.Dynamic, Property.IndexScope);
+
+    public static final List<Setting<?>> SETTINGS = Arrays.asList(THRESHOLD_WARN_SETTING, THRESHOLD_INFO_SETTING,
+            THRESHOLD_DEBUG_SETTING, THRESHOLD_TRACE_SETTING, PHRASE_MAX_LENGTH_SETTING);
+
+    private final String indexName;
+
+    private final Logger logger;
+
+    private volatile long warnThreshold;
+
+    private volatile long infoThreshold;
+
+    private volatile long debugThreshold;
+
+    private volatile long traceThreshold;
+
+    private volatile int phraseMaxLength;
+
+    public VietnameseSlowLog(final IndexSettings indexSettings) {
+        indexName = indexSettings.getIndex().getName();
+        logger = Loggers.getLogger(SLOWLOG_PREFIX + ".tokenizer", indexSettings.getSettings());
+        warnThreshold = THRESHOLD_WARN_SETTING.get(indexSettings.getSettings()).nanos();
+        infoThreshold = THRESHOLD_INFO_SETTING.get(indexSettings.getSettings()).nanos();
+        debugThreshold = THRESHOLD_DEBUG_SETTING.get(indexSettings.getSettings()).nanos();
+        traceThreshold = THRESHOLD_TRACE_SETTING.get(indexSettings.getSettings()).nanos();
+        phraseMaxLength = PHRASE_MAX_LENGTH_SETTING.get(indexSettings.getSettings());
+        final AbstractScopedSettings scopedSettings = indexSettings.getScopedSettings();
+        addSettingsUpdateConsumer(scopedSettings, THRESHOLD_WARN_SETTING, value -> warnThreshold = value.nanos());
+        addSettingsUpdateConsumer(scopedSettings, THRESHOLD_INFO_SETTING, value -> infoThreshold = value.nanos());
+        addSettingsUpdateConsumer(scopedSettings, THRESHOLD_DEBUG_SETTING, value -> debugThreshold = value.nanos());
+        addSettingsUpdateConsumer(scopedSettings, THRESHOLD_TRACE_SETTING, value -> traceThreshold = value.nanos());
+        addSettingsUpdateConsumer(scopedSettings, PHRASE_MAX_LENGTH_SETTING, value -> phraseMaxLength = value);
+    }
+
+    private static Setting<TimeValue> thresholdSetting(final String level) {
+        return Setting.timeSetting(SLOWLOG_PREFIX + ".threshold." + level, TimeValue.timeValueNanos(-1),
+                TimeValue.timeValueMillis(-1), Property.Dynamic, Property.IndexScope);
+    }
+
+    private static <T> void addSettingsUpdateConsumer(final AbstractScopedSettings scopedSettings, final Setting<T> setting,
+            final Consumer<T> consumer) {
+        // the analyzers built without an index only know the built-in settings
+        if (scopedSettings.get(setting.getKey()) != null) {
+            scopedSettings.addSettingsUpdateConsumer(setting, consumer);
+        }
+    }
+
+    /**
+     * @return <tt>true</tt> if a threshold is set, so the documents must be
+     *         traced.
+     */
+    public boolean isEnabled() {
+        return warnThreshold >= 0 || infoThreshold >= 0 || debugThreshold >= 0 || traceThreshold >= 0;
+    }
+
+    /**
+     * Logs a document if its tokenization exceeded a threshold.
+     *
+     * @param length the length of the document
+     * @param tokens the number of tokens emitted
+     * @param trace the trace of the document
+     */
+    public void onDocument(final int length, final int tokens, final TokenizationTrace trace) {
+        final long tookInNanos = trace.getTotalNanos();
+        if (warnThreshold >= 0 && tookInNanos > warnThreshold) {
+            logger.warn("{}", new SlowLogMessage(indexName, length, tokens, trace, phraseMaxLength));
+        } else if (infoThreshold >= 0 && tookInNanos > infoThreshold) {
+            logger.info("{}", new SlowLogMessage(indexName, length, tokens, trace, phraseMaxLength));
+        } else if (debugThreshold >= 0 && tookInNanos > debugThreshold) {
+            logger.debug("{}", new SlowLogMessage(indexName, length, tokens, trace, phraseMaxLength));
+        } else if (traceThreshold >= 0 && tookInNanos > traceThreshold) {
+            logger.trace("{}", new SlowLogMessage(indexName, length, tokens, trace, phraseMaxLength));
+        }
+    }
+
+    static final class SlowLogMessage {
+        private final String indexName;
+        private final int length;
+        private final int tokens;
+        private final TokenizationTrace trace;
+        private final int phraseMaxLength;
+
+        SlowLogMessage(final String indexName, final int length, final int tokens, final TokenizationTrace trace,
+                final int phraseMaxLength) {
+            this.indexName = indexName;
+            this.length = length;
+            this.tokens = tokens;
+            this.trace = trace;
+            this.phraseMaxLength = phraseMaxLength;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append('[').append(indexName).append("] ");
+            sb.append("took[").append(TimeValue.timeValueNanos(trace.getTotalNanos())).append("], ");
+            sb.append("took_millis[").append(TimeUnit.NANOSECONDS.toMillis(trace.getTotalNanos())).append("], ");
+            sb.append("length[").append(length).append("], ");
+            sb.append("tokens[").append(tokens).append("], ");
+            sb.append("lexing[").append(TimeValue.timeValueNanos(trace.getLexingNanos())).append("], ");
+            sb.append("segmentation[").append(TimeValue.timeValueNanos(trace.getSegmentationNanos())).append("], ");
+            sb.append("resolution[").append(TimeValue.timeValueNanos(trace.getResolutionNanos())).append("], ");
+            sb.append("merging[").append(TimeValue.timeValueNanos(trace.getMergingNanos())).append("], ");
+            sb.append("phrases[").append(trace.getPhrases()).append("], ");
+            sb.append("segmentations[").append(trace.getSegmentations()).append(']');
+            final String phrase = trace.getSlowestPhrase();
+            if (phrase != null) {
+                sb.append(", slowest_phrase_took[").append(TimeValue.timeValueNanos(trace.getSlowestPhraseNanos())).append("], ");
+                sb.append("slowest_phrase_syllables[").append(trace.getSlowestPhraseSyllables()).append("], ");
+                sb.append("slowest_phrase_segmentations[").append(trace.getSlowestPhraseSegmentations()).append("], ");
+                sb.append("slowest_phrase[");
+                if (phrase.length() > phraseMaxLength) {
+                    sb.append(phrase, 0, phraseMaxLength).append("...");
+                } else {
+                    sb.append(phrase);
+                }
+                sb.append(']');
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -15,99 +15,292 @@
 package org.codelibs.elasticsearch.vi.analysis;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.SegmentationExplanation;
 import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.TaggedWord;
 
 /**
  * Vietnamese TaggedWordTokenizer.
+ * <p>
+ * The input is read in windows of at most {@code chunkSize} characters. Each
+ * window is cut at a safe boundary (a line end, a sentence punctuation or a
+ * blank) and tokenized on its own, so the memory held by a tokenizer does not
+ * depend on the size of the field.
  *
  * @author duydo
  */
 public class VietnameseTokenizer extends Tokenizer {
 
-    private final List<TaggedWord> pending = new CopyOnWriteArrayList<>();
-    private int offset = 0;
+    /**
+     * The default number of characters tokenized at once.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    /**
+     * The largest number of characters tokenized at once, the buffer of a
+     * tokenizer being allocated at this size.
+     */
+    public static final int MAX_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The tagged words of the current chunk, reused from chunk to chunk.
+     */
+    private TaggedWord[] pending = new TaggedWord[64];
+    private int pendingSize = 0;
     private int pos = 0;
 
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
     private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
     private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
     private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+    private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
 
     private final TaggedWordTokenizer taggedWordTokenizer;
-    private String inputText;
 
-    public VietnameseTokenizer(final TaggedWordTokenizer taggedWordTokenizer) {
+    private final TokenizerOptions options;
+
+    /**
+     * The slow log of the index, or <tt>null</tt>.
+     */
+    private final VietnameseSlowLog slowLog;
+
+    /**
+     * The cost of the current input, or <tt>null</tt> if it is not traced.
+     */
+    private TokenizationTrace trace;
+
+    /**
+     * Whether the segmentations are explained.
+     */
+    private final boolean explain;
+
+    /**
+     * The budget of the current input, or <tt>null</tt> if it is unlimited.
+     */
+    private final SegmentationBudget.Deadline deadline;
+
+    /**
+     * The explanations of the phrases, or <tt>null</tt> if the segmentations
+     * are not explained.
+     */
+    private final SegmentationAttribute segmentationAtt;
+
+    /**
+     * The position of the next explanation to attach to a token.
+     */
+    private int explanationPos = 0;
+
+    /**
+     * The window of the input which is not tokenized yet.
+     */
+    private final char[] buffer;
+
+    /**
+     * The number of characters available in the buffer.
+     */
+    private int bufferLength = 0;
+
+    /**
+     * The offset of the first character of the buffer in the input.
+     */
+    private int bufferOffset = 0;
+
+    private boolean exhausted = false;
+
+    /**
+     * The number of tokens emitted for the current input.
+     */
+    private int tokenCount = 0;
+
+    /**
+     * @param taggedWordTokenizer the shared tokenizer of the model
+     * @param options the options of the tokenizer
+     */
+    public VietnameseTokenizer(final TaggedWordTokenizer taggedWordTokenizer, final TokenizerOptions options) {
         super();
         this.taggedWordTokenizer = taggedWordTokenizer;
+        this.options = options;
+        this.slowLog = options.getSlowLog();
+        this.explain = options.isExplain();
+        final SegmentationBudget budget = options.getBudget();
+        this.deadline = budget != SegmentationBudget.UNLIMITED ? budget.start() : null;
+        this.segmentationAtt = explain ? addAttribute(SegmentationAttribute.class) : null;
+        this.buffer = new char[options.getChunkSize()];
     }
 
-    private void tokenize() throws IOException {
-        inputText = IOUtils.toString(input);
-        final List<TaggedWord> result = taggedWordTokenizer.tokenize(new StringReader(inputText));
+    /**
+     * Tokenizes the next chunk of the input.
+     *
+     * @return <tt>false</tt> if the whole input has been consumed.
+     */
+    private boolean tokenize() throws IOException {
+        fillBuffer();
+        if (bufferLength == 0) {
+            return false;
+        }
+        final int cut = exhausted ? bufferLength : findCut();
+        final String chunkText = new String(buffer, 0, cut);
+        final int chunkOffset = bufferOffset;
+        // keep the rest of the window for the next chunk
+        System.arraycopy(buffer, cut, buffer, 0, bufferLength - cut);
+        bufferLength -= cut;
+        bufferOffset += cut;
+
+        clearPending();
+        final List<TaggedWord> result = taggedWordTokenizer.tokenize(chunkText, chunkOffset, options, deadline, trace);
         if (result != null) {
-            pending.addAll(result);
+            final int size = result.size();
+            if (size > pending.length) {
+                pending = new TaggedWord[Math.max(size, pending.length * 2)];
+            }
+            for (int i = 0; i < size; i++) {
+                pending[i] = result.get(i);
+            }
+            pendingSize = size;
+        }
+        return true;
+    }
+
+    private void fillBuffer() throws IOException {
+        while (!exhausted && bufferLength < buffer.length) {
+            final int n = input.read(buffer, bufferLength, buffer.length - bufferLength);
+            if (n == -1) {
+                exhausted = true;
+            } else {
+                bufferLength += n;
+            }
+        }
+    }
+
+    /**
+     * Finds the end of the next chunk in a full buffer. A line end is preferred,
+     * then a sentence punctuation followed by a blank, then a blank. If none of
+     * them is found, the window is cut as is.
+     */
+    private int findCut() {
+        for (int i = bufferLength - 1; i >= 0; i--) {
+            if (buffer[i] == '\n' || buffer[i] == '\r') {
+                return i + 1;
+            }
         }
+        for (int i = bufferLength - 2; i >= 0; i--) {
+            if (isSentenceEnd(buffer[i]) && Character.isWhitespace(buffer[i + 1])) {
+                return i + 2;
+            }
+        }
+        for (int i = bufferLength - 1; i >= 0; i--) {
+            if (Character.isWhitespace(buffer[i])) {
+                return i + 1;
+            }
+        }
+        // do not split a surrogate pair, unless it would leave an empty chunk
+        if (bufferLength > 1 && Character.isHighSurrogate(buffer[bufferLength - 1])) {
+            return bufferLength - 1;
+        }
+        return bufferLength;
+    }
+
+    private static boolean isSentenceEnd(final char c) {
+        return c == '.' || c == '!' || c == '?' || c == ';';
     }
 
     @Override
     public final boolean incrementToken() throws IOException {
-        while (pending.isEmpty()) {
-            tokenize();
-            if (pending.isEmpty()) {
+        clearAttributes();
+        while (true) {
+            while (pos < pendingSize) {
+                final TaggedWord word = pending[pos++];
+                if (accept(word)) {
+                    posIncrAtt.setPositionIncrement(word.getPositionIncrement());
+                    posLenAtt.setPositionLength(word.getPositionLength());
+                    typeAtt.setType(word.getRule().getType());
+                    termAtt.setEmpty().append(word.getText());
+                    offsetAtt.setOffset(correctOffset(word.getStartOffset()), correctOffset(word.getEndOffset()));
+                    if (segmentationAtt != null) {
+                        segmentationAtt.setExplanation(nextExplanation(word.getStartOffset()));
+                    }
+                    tokenCount++;
+                    return true;
+                }
+            }
+            if (!tokenize()) {
                 return false;
             }
         }
-        clearAttributes();
+    }
 
-        for (int i = pos; i < pending.size(); i++) {
-            pos++;
-            final TaggedWord word = pending.get(i);
-            if (accept(word)) {
-                posIncrAtt.setPositionIncrement(1);
-                final int length = word.getText().length();
-                typeAtt.setType(String.format("<%s>", word.getRule().getName().toUpperCase()));
-                termAtt.copyBuffer(word.getText().toCharArray(), 0, length);
-                final int start = inputText.indexOf(word.getText(), i);
-                offsetAtt.setOffset(correctOffset(start), offset = correctOffset(start + length));
-                return true;
-            }
+    /**
+     * @return the explanation of the phrase starting at the given offset, or
+     *         <tt>null</tt> if no phrase starts there.
+     */
+    private SegmentationExplanation nextExplanation(final int startOffset) {
+        final List<SegmentationExplanation> explanations = trace.getExplanations();
+        while (explanationPos < explanations.size() && explanations.get(explanationPos).getStartOffset() < startOffset) {
+            explanationPos++;
+        }
+        if (explanationPos < explanations.size() && explanations.get(explanationPos).getStartOffset() == startOffset) {
+            return explanations.get(explanationPos++);
         }
-        return false;
+        return null;
     }
 
     /**
      * Only accept the word characters.
      */
     private final boolean accept(final TaggedWord word) {
-        final String type = word.getRule().getName().toLowerCase();
-        if ("punctuation".equals(type) || "special".equals(type)) {
-            return false;
-        }
-        return true;
+        return !word.getRule().isPunctuation();
+    }
+
+    private void clearPending() {
+        Arrays.fill(pending, 0, pendingSize, null);
+        pendingSize = 0;
+        pos = 0;
     }
 
     @Override
     public final void end() throws IOException {
         super.end();
-        final int finalOffset = correctOffset(offset);
+        final int finalOffset = correctOffset(bufferOffset + bufferLength);
         offsetAtt.setOffset(finalOffset, finalOffset);
+        final TokenizerMetrics metrics = taggedWordTokenizer.getMetrics();
+        if (metrics != null) {
+            metrics.onDocument(bufferOffset + bufferLength, tokenCount);
+        }
+        if (trace != null && slowLog != null) {
+            slowLog.onDocument(bufferOffset + bufferLength, tokenCount, trace);
+        }
     }
 
     @Override
     public void reset() throws IOException {
         super.reset();
-        pos = 0;
-        offset = 0;
-        pending.clear();
+        clearPending();
+        bufferLength = 0;
+        bufferOffset = 0;
+        exhausted = false;
+        tokenCount = 0;
+        explanationPos = 0;
+        if (deadline != null) {
+            deadline.reset();
+        }
+        // the slow log thresholds are dynamic, a document is traced only if
+        // one of them is set when it starts
+        if (explain || (slowLog != null && slowLog.isEnabled())) {
+            if (trace == null) {
+                trace = new TokenizationTrace(explain);
+            } else {
+                trace.reset();
+            }
+        } else {
+            trace = null;
+        }
     }
 }
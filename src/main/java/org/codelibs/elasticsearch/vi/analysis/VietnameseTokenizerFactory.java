@@ -14,29 +14,63 @@
 
 package org.codelibs.elasticsearch.vi.analysis;
 
-import java.security.AccessController;
-import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.lucene.analysis.Tokenizer;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.AbstractLexiconRecognizer;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractTokenizerFactory;
+import org.elasticsearch.index.analysis.Analysis;
 
 /**
  * @author duydo
  */
 public class VietnameseTokenizerFactory extends AbstractTokenizerFactory {
     private final TaggedWordTokenizer taggedWordTokenizer;
+    private final TokenizerOptions options;
 
     public VietnameseTokenizerFactory(final IndexSettings indexSettings, final Environment environment, final String name,
-            final Settings settings) {
+            final Settings settings, final VietnameseModelRegistry modelRegistry) {
         super(indexSettings, name, settings);
-        taggedWordTokenizer = AccessController.doPrivileged((PrivilegedAction<TaggedWordTokenizer>) () -> new TaggedWordTokenizer());
+        taggedWordTokenizer = modelRegistry.acquire(indexSettings.getIndex(), TaggedWordTokenizer.DEFAULT_MODEL);
+        options = TokenizerOptions.builder()
+                .chunkSize(settings.getAsInt("chunk_size", VietnameseTokenizer.DEFAULT_CHUNK_SIZE))
+                .overlay(parseUserWords(environment, settings, taggedWordTokenizer))
+                .slowLog(new VietnameseSlowLog(indexSettings))
+                .explain(settings.getAsBoolean("explain", false))
+                .mode(SegmentationMode.parse(settings.get("mode", SegmentationMode.ACCURATE.toString())))
+                .budget(SegmentationBudget.parse(settings))
+                .build();
     }
 
     @Override
     public Tokenizer create() {
-        return new VietnameseTokenizer(taggedWordTokenizer);
+        return new VietnameseTokenizer(taggedWordTokenizer, options);
+    }
+
+    /**
+     * Builds the overlay lexicon of the words declared with
+     * <tt>user_words</tt> or <tt>user_words_path</tt>. The words are
+     * normalized by the model as the phrases are.
+     *
+     * @return the overlay, or <tt>null</tt> if no word is declared
+     */
+    static AbstractLexiconRecognizer parseUserWords(final Environment environment, final Settings settings,
+            final TaggedWordTokenizer taggedWordTokenizer) {
+        final List<String> userWords = Analysis.getWordList(environment, settings, "user_words");
+        if (userWords == null || userWords.isEmpty()) {
+            return null;
+        }
+        final List<String> words = new ArrayList<>(userWords.size());
+        for (final String userWord : userWords) {
+            final String word = userWord.trim();
+            if (word.length() > 0) {
+                words.add(word.replaceAll("\\s+", " "));
+            }
+        }
+        return taggedWordTokenizer.newLexiconRecognizer(words);
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.AbstractLexiconRecognizer;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.ExternalLexiconRecognizer;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.watcher.FileChangesListener;
+import org.elasticsearch.watcher.FileWatcher;
+import org.elasticsearch.watcher.ResourceWatcherService;
+
+/**
+ * A node wide dictionary of words added to the lexicon of all the models.
+ * <p>
+ * The dictionary is a UTF-8 text file in the config directory with one word
+ * per line, blank lines and lines starting with <tt>#</tt> being ignored. Each
+ * model lowercases the words and normalizes their accents as it does those of
+ * the phrases, so <tt>hòa bình</tt> matches the phrase <tt>hoà bình</tt>. The
+ * file is watched, and on each change a new recognizer is built on the watcher
+ * thread and published at once. A segmentation gets the recognizer when it
+ * starts, so it never sees a half loaded dictionary and is never blocked by a
+ * reload.
+ */
+public class VietnameseUserDictionary implements Supplier<AbstractLexiconRecognizer>, FileChangesListener {
+
+    private static final Logger logger = LogManager.getLogger(VietnameseUserDictionary.class);
+
+    public static final Setting<String> USER_DICTIONARY_SETTING = Setting.simpleString("vi.user_dictionary", Property.NodeScope);
+
+    private static final AbstractLexiconRecognizer EMPTY = new ExternalLexiconRecognizer(Collections.<String> emptyList());
+
+    private final Path path;
+
+    private final AtomicReference<AbstractLexiconRecognizer> recognizer = new AtomicReference<>(EMPTY);
+
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Loads a user dictionary.
+     *
+     * @param path the dictionary file, or <tt>null</tt> for an empty dictionary
+     */
+    public VietnameseUserDictionary(final Path path) {
+        this.path = path;
+        if (path != null) {
+            try {
+                recognizer.set(load(path));
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Failed to load the user dictionary " + path, e);
+            }
+        }
+    }
+
+    private static AbstractLexiconRecognizer load(final Path path) throws IOException {
+        final List<String> words = new ArrayList<>();
+        for (final String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            final String word = line.trim();
+            if (word.length() > 0 && word.charAt(0) != '#') {
+                words.add(word.replaceAll("\\s+", " "));
+            }
+        }
+        logger.info("Loaded {} words from the user dictionary {}", words.size(), path);
+        return new ExternalLexiconRecognizer(words);
+    }
+
+    /**
+     * Watches the dictionary file for changes.
+     *
+     * @param resourceWatcherService the resource watcher service of the node
+     */
+    public void watch(final ResourceWatcherService resourceWatcherService) {
+        if (path == null) {
+            return;
+        }
+        final FileWatcher watcher = new FileWatcher(path);
+        watcher.addListener(this);
+        try {
+            resourceWatcherService.add(watcher, ResourceWatcherService.Frequency.HIGH);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Failed to watch the user dictionary " + path, e);
+        }
+    }
+
+    /**
+     * Reloads the dictionary file. If the file cannot be read, the current
+     * dictionary is kept.
+     */
+    public void reload() {
+        if (path == null) {
+            return;
+        }
+        try {
+            publish(load(path));
+        } catch (final IOException e) {
+            logger.warn("Failed to reload the user dictionary " + path + ", keeping the previous one", e);
+        }
+    }
+
+    private void publish(final AbstractLexiconRecognizer newRecognizer) {
+        recognizer.set(newRecognizer);
+        for (final Runnable listener : reloadListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * @param listener called after each change of the dictionary
+     */
+    public void addReloadListener(final Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    public void removeReloadListener(final Runnable listener) {
+        reloadListeners.remove(listener);
+    }
+
+    /**
+     * @return the current recognizer of the dictionary.
+     */
+    @Override
+    public AbstractLexiconRecognizer get() {
+        return recognizer.get();
+    }
+
+    @Override
+    public void onFileCreated(final Path file) {
+        reload();
+    }
+
+    @Override
+    public void onFileChanged(final Path file) {
+        reload();
+    }
+
+    @Override
+    public void onFileDeleted(final Path file) {
+        logger.warn("The user dictionary {} has been deleted, the dictionary is now empty", path);
+        publish(EMPTY);
+    }
+}
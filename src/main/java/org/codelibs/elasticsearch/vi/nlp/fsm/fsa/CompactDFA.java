@@ -0,0 +1,172 @@
+package org.codelibs.elasticsearch.vi.nlp.fsm.fsa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.util.RamUsageEstimator;
+import org.codelibs.elasticsearch.vi.nlp.fsm.State;
+import org.codelibs.elasticsearch.vi.nlp.fsm.Transition;
+
+/**
+ * An immutable, array based copy of a {@link DFA}.
+ * <p>
+ * States are numbered from zero, the initial state being the state zero. The
+ * outtransitions of a state are stored contiguously and sorted by input, so
+ * the next state is found by a binary search. Since nothing is modified after
+ * construction, a compact DFA can be simulated by many threads at the same
+ * time, without any simulator or configuration object.
+ */
+public final class CompactDFA {
+
+    /**
+     * The value returned by {@link #next(int, char)} when there is no
+     * transition.
+     */
+    public static final int NO_STATE = -1;
+
+    /**
+     * The first outtransition of each state, the outtransitions of state
+     * <tt>s</tt> are in <tt>[firstTransition[s], firstTransition[s + 1])</tt>.
+     */
+    private final int[] firstTransition;
+
+    /**
+     * The inputs of transitions.
+     */
+    private final char[] inputs;
+
+    /**
+     * The targets of transitions.
+     */
+    private final int[] targets;
+
+    /**
+     * The final states.
+     */
+    private final boolean[] finalStates;
+
+    /**
+     * Builds a compact copy of a DFA.
+     * @param dfa a DFA
+     */
+    public CompactDFA(final DFA dfa) {
+        final Map<Integer, State> states = dfa.getStates();
+        // number the states, the initial state first
+        final List<Integer> ids = new ArrayList<>(states.keySet());
+        Collections.sort(ids);
+        final Map<Integer, Integer> numbers = new HashMap<>(ids.size() * 2);
+        for (final Integer id : ids) {
+            numbers.put(id, numbers.size());
+        }
+        final int n = ids.size();
+        firstTransition = new int[n + 1];
+        finalStates = new boolean[n];
+        int nTransitions = 0;
+        for (final State state : states.values()) {
+            nTransitions += state.getNumberOfOutTransitions();
+        }
+        inputs = new char[nTransitions];
+        targets = new int[nTransitions];
+        int t = 0;
+        for (int s = 0; s < n; s++) {
+            final State state = states.get(ids.get(s));
+            finalStates[s] = state.isFinalState();
+            firstTransition[s] = t;
+            final List<Transition> transitions = new ArrayList<>(state.getOutTransitions());
+            transitions.sort((t1, t2) -> Character.compare(t1.getInput(), t2.getInput()));
+            for (final Transition transition : transitions) {
+                inputs[t] = transition.getInput();
+                targets[t] = numbers.get(transition.getTarget());
+                t++;
+            }
+        }
+        firstTransition[n] = t;
+    }
+
+    /**
+     * @return the initial state.
+     */
+    public int getInitialState() {
+        return 0;
+    }
+
+    /**
+     * Get the next state of a state given an input.
+     * @param state a state
+     * @param input an input
+     * @return the next state or {@link #NO_STATE}.
+     */
+    public int next(final int state, final char input) {
+        int low = firstTransition[state];
+        int high = firstTransition[state + 1] - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final char c = inputs[mid];
+            if (c < input) {
+                low = mid + 1;
+            } else if (c > input) {
+                high = mid - 1;
+            } else {
+                return targets[mid];
+            }
+        }
+        return NO_STATE;
+    }
+
+    /**
+     * Get the state reached from a state on a sequence of inputs.
+     * @param state a state
+     * @param input a sequence of inputs
+     * @param start the first input
+     * @param end the end of the inputs
+     * @return the state reached or {@link #NO_STATE}.
+     */
+    public int next(int state, final CharSequence input, final int start, final int end) {
+        for (int i = start; i < end && state != NO_STATE; i++) {
+            state = next(state, input.charAt(i));
+        }
+        return state;
+    }
+
+    /**
+     * @param state a state
+     * @return <tt>true</tt> if the state is final.
+     */
+    public boolean isFinalState(final int state) {
+        return finalStates[state];
+    }
+
+    /**
+     * @param input an input
+     * @return <tt>true</tt> if the input is accepted by the automaton.
+     */
+    public boolean accept(final CharSequence input) {
+        final int state = next(getInitialState(), input, 0, input.length());
+        return state != NO_STATE && finalStates[state];
+    }
+
+    /**
+     * @return the number of states.
+     */
+    public int getNumberOfStates() {
+        return finalStates.length;
+    }
+
+    /**
+     * @return the number of transitions.
+     */
+    public int getNumberOfTransitions() {
+        return inputs.length;
+    }
+
+    /**
+     * @return the size of the automaton in bytes.
+     */
+    public long ramBytesUsed() {
+        return RamUsageEstimator.sizeOf(firstTransition) + RamUsageEstimator.sizeOf(inputs) + RamUsageEstimator.sizeOf(targets)
+                + RamUsageEstimator.sizeOf(finalStates);
+    }
+}
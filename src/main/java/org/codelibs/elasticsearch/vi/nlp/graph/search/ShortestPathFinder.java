@@ -49,6 +49,17 @@ public class ShortestPathFinder {
 
     private Set<Node> shortestPaths;
 
+    /**
+     * The number of shortest paths after which the enumeration stops.
+     */
+    private int maxPaths;
+
+    /**
+     * Whether the last enumeration stopped before all shortest paths were
+     * found.
+     */
+    private boolean truncated;
+
     private int startVertex = 0;
 
     private final double epsilon = 0.0001d;
@@ -244,6 +255,24 @@ public class ShortestPathFinder {
      * @return all shortest paths.
      */
     public Node[] getAllShortestPaths(final int v) {
+        return getAllShortestPaths(v, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get at most <tt>maxPaths</tt> shortest paths that lead to a vertex
+     * <tt>v</tt>. The number of shortest paths can grow exponentially with the
+     * number of vertices, the enumeration stops as soon as a path is found
+     * beyond the first <tt>maxPaths</tt> ones, which is reported by
+     * {@link #isTruncated()}.
+     *
+     * @see #getAllShortestPaths(int)
+     * @param v
+     * @param maxPaths the maximum number of paths, at least 1
+     * @return the shortest paths found.
+     */
+    public Node[] getAllShortestPaths(final int v, final int maxPaths) {
+        this.maxPaths = maxPaths;
+        truncated = false;
         // init the path array
         path = new int[graph.getNumberOfVertices()];
         for (int i = 0; i < path.length; i++) {
@@ -256,17 +285,35 @@ public class ShortestPathFinder {
         return shortestPaths.toArray(new Node[shortestPaths.size()]);
     }
 
+    /**
+     * Tell whether the last call to {@link #getAllShortestPaths(int, int)}
+     * found more shortest paths than it returned.
+     *
+     * @return <tt>true</tt> if the enumeration was truncated.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
     private void backtrack(final int v, final double weight) {
         path[k] = v;
         if ((v == startVertex) && (Math.abs(weight - 0) < epsilon)) {
-            // get a shortest path
-            shortestPaths.add(getPath(path, k + 1));
+            // get a shortest path, one beyond the limit only tells that the
+            // enumeration is truncated
+            if (shortestPaths.size() < maxPaths) {
+                shortestPaths.add(getPath(path, k + 1));
+            } else {
+                truncated = true;
+            }
         } else {
             k++;
             // get incoming edges of vertex v
             // and try
             final Edge[] edges = getIncomingEdges(v);
             for (final Edge e : edges) {
+                if (truncated) {
+                    break;
+                }
                 final double newWeight = weight - e.getWeight();
                 if (newWeight >= 0) {
                     backtrack(e.getU(), newWeight);
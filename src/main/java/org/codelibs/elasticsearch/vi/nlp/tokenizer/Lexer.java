@@ -0,0 +1,747 @@
+package org.codelibs.elasticsearch.vi.nlp.tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+import org.apache.lucene.util.automaton.Transition;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.LexerRule;
+
+/**
+ * Finds the lexer rule matching the longest prefix of a text, the earliest
+ * rule winning among the rules matching as many characters.
+ * <p>
+ * The rules are compiled once into a single deterministic automaton, the
+ * union of the automata of the rules, their lookarounds and anchors being
+ * dropped. Running it over the text gives in one pass, for each rule, the
+ * longest prefix the rule could match, which is a bound on the length of its
+ * actual match. Only the rules whose bound can beat the best match found so
+ * far are then verified with their regular expression, by decreasing bound,
+ * so that the result is the one of trying every rule. The rules the
+ * automaton cannot express are always verified.
+ * <p>
+ * The first characters of the rules are also computed when they are loaded,
+ * in a table giving for a character the rules which can start with it. The
+ * table selects the candidate rules on its own when the combined automaton
+ * is too large to be built, and before a supplementary character, which the
+ * automaton does not read.
+ * <p>
+ * A lexer is immutable and shared by threads; the matching state is kept by
+ * a {@link Scanner}.
+ */
+public class Lexer {
+
+    private static final Logger logger = LogManager.getLogger(Lexer.class);
+
+    /**
+     * The maximum number of states of the combined automaton.
+     */
+    private static final int MAX_DETERMINIZED_STATES = 20000;
+
+    /**
+     * The label ending the words of each rule, beyond the characters read by
+     * the automaton.
+     */
+    private static final int MARKER = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+
+    private final LexerRule[] rules;
+
+    /**
+     * The combined automaton, or <tt>null</tt> if no rule could be compiled.
+     */
+    private final CharacterRunAutomaton automaton;
+
+    /**
+     * The rules accepting in each state of the automaton, as bit sets.
+     */
+    private final long[] acceptedRules;
+
+    /**
+     * The rules which are not compiled, always verified.
+     */
+    private final boolean[] unbounded;
+
+    /**
+     * The dispatch table of the first character: the compiled rules which
+     * can match a text starting with a character of
+     * <tt>[firstCharPoints[k], firstCharPoints[k + 1])</tt> are
+     * <tt>firstCharRules[k]</tt>, as bit sets.
+     */
+    private final int[] firstCharPoints;
+
+    private final long[] firstCharRules;
+
+    /**
+     * The dispatch table of the first character for Latin-1, by character.
+     */
+    private final long[] latinFirstCharRules = new long[256];
+
+    /**
+     * The compiled rules matching the empty string, candidates whatever the
+     * first character.
+     */
+    private final long emptyRules;
+
+    /**
+     * The compiled rules, candidates before a supplementary character.
+     */
+    private final long compiledRules;
+
+    /**
+     * The statistics the rules are recorded to, or <tt>null</tt> if they are
+     * not recorded.
+     */
+    private volatile LexerStats stats;
+
+    /**
+     * @param rules the rules, by decreasing priority
+     */
+    public Lexer(final List<LexerRule> rules) {
+        this(rules, MAX_DETERMINIZED_STATES);
+    }
+
+    /**
+     * @param rules the rules, by decreasing priority
+     * @param maxDeterminizedStates the maximum number of states of the
+     *        combined automaton, <tt>0</tt> to select the candidate rules
+     *        with the first character only
+     */
+    public Lexer(final List<LexerRule> rules, final int maxDeterminizedStates) {
+        this.rules = rules.toArray(new LexerRule[rules.size()]);
+        unbounded = new boolean[this.rules.length];
+        final Automaton[] ruleAutomata = new Automaton[Math.min(this.rules.length, Long.SIZE)];
+        final RegexCompiler compiler = new RegexCompiler();
+        for (int i = 0; i < this.rules.length; i++) {
+            if (i >= Long.SIZE) {
+                unbounded[i] = true;
+                continue;
+            }
+            try {
+                ruleAutomata[i] = compiler.compile(this.rules[i].getRegex());
+            } catch (final IllegalArgumentException e) {
+                logger.debug("The lexer rule {} is not compiled: {}", this.rules[i], e.getMessage());
+                unbounded[i] = true;
+            }
+        }
+
+        // the first characters of the rules, from the initial state of their
+        // automata, which have no empty transitions
+        final TreeSet<Integer> points = new TreeSet<>();
+        points.add(0);
+        long empty = 0L;
+        final Transition transition = new Transition();
+        for (int i = 0; i < ruleAutomata.length; i++) {
+            if (ruleAutomata[i] == null) {
+                continue;
+            }
+            if (ruleAutomata[i].isAccept(0)) {
+                empty |= 1L << i;
+            }
+            final int count = ruleAutomata[i].initTransition(0, transition);
+            for (int t = 0; t < count; t++) {
+                ruleAutomata[i].getNextTransition(transition);
+                points.add(transition.min);
+                points.add(transition.max + 1);
+            }
+        }
+        emptyRules = empty;
+        long compiled = 0L;
+        for (int i = 0; i < ruleAutomata.length; i++) {
+            if (ruleAutomata[i] != null) {
+                compiled |= 1L << i;
+            }
+        }
+        compiledRules = compiled;
+        firstCharPoints = new int[points.size()];
+        int k = 0;
+        for (final Integer point : points) {
+            firstCharPoints[k++] = point;
+        }
+        firstCharRules = new long[firstCharPoints.length];
+        for (int i = 0; i < ruleAutomata.length; i++) {
+            if (ruleAutomata[i] == null) {
+                continue;
+            }
+            final int count = ruleAutomata[i].initTransition(0, transition);
+            for (int t = 0; t < count; t++) {
+                ruleAutomata[i].getNextTransition(transition);
+                for (k = Arrays.binarySearch(firstCharPoints, transition.min); k < firstCharPoints.length
+                        && firstCharPoints[k] <= transition.max; k++) {
+                    firstCharRules[k] |= 1L << i;
+                }
+            }
+        }
+        for (int c = 0; c < latinFirstCharRules.length; c++) {
+            latinFirstCharRules[c] = lookupFirstCharRules((char) c);
+        }
+
+        final List<Automaton> automata = new ArrayList<>(ruleAutomata.length);
+        for (int i = 0; i < ruleAutomata.length; i++) {
+            if (ruleAutomata[i] != null) {
+                automata.add(Operations.concatenate(ruleAutomata[i], Automata.makeChar(MARKER + i)));
+            }
+        }
+        CharacterRunAutomaton runAutomaton = null;
+        if (!automata.isEmpty() && maxDeterminizedStates > 0) {
+            try {
+                runAutomaton = new CharacterRunAutomaton(Operations.union(automata), maxDeterminizedStates);
+            } catch (final TooComplexToDeterminizeException e) {
+                logger.warn("The lexer rules are too complex to be combined, the candidate rules are selected by their first character",
+                        e);
+            }
+        }
+        automaton = runAutomaton;
+        if (automaton != null) {
+            acceptedRules = new long[automaton.getSize()];
+            for (int state = 0; state < acceptedRules.length; state++) {
+                for (int i = 0; i < ruleAutomata.length; i++) {
+                    final int next = automaton.step(state, MARKER + i);
+                    if (next >= 0 && automaton.isAccept(next)) {
+                        acceptedRules[state] |= 1L << i;
+                    }
+                }
+            }
+        } else {
+            acceptedRules = null;
+        }
+    }
+
+    private long lookupFirstCharRules(final char c) {
+        int k = Arrays.binarySearch(firstCharPoints, c);
+        if (k < 0) {
+            k = -k - 2;
+        }
+        return firstCharRules[k] | emptyRules;
+    }
+
+    /**
+     * @return the compiled rules which can match a text starting with a
+     *         character, as a bit set ordered by priority, the rules which
+     *         are not compiled excepted.
+     */
+    long firstCharRules(final char c) {
+        return c < latinFirstCharRules.length ? latinFirstCharRules[c] : lookupFirstCharRules(c);
+    }
+
+    /**
+     * @return the rules, by decreasing priority.
+     */
+    public LexerRule[] getRules() {
+        return rules;
+    }
+
+    /**
+     * @return the rules which can match a text starting with a character, by
+     *         decreasing priority.
+     */
+    public List<LexerRule> getCandidateRules(final char first) {
+        final long candidates = Character.isSurrogate(first) ? compiledRules : firstCharRules(first);
+        final List<LexerRule> candidateRules = new ArrayList<>();
+        for (int i = 0; i < rules.length; i++) {
+            if (unbounded[i] || (candidates & 1L << i) != 0) {
+                candidateRules.add(rules[i]);
+            }
+        }
+        return candidateRules;
+    }
+
+    /**
+     * @return the statistics the rules are recorded to, or <tt>null</tt> if
+     *         they are not recorded.
+     */
+    public LexerStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Starts or stops recording the work of the rules, at any time. The
+     * statistics are kept while they are recorded and dropped once stopped.
+     */
+    public synchronized void setStatsEnabled(final boolean enabled) {
+        if (!enabled) {
+            stats = null;
+        } else if (stats == null) {
+            stats = new LexerStats(rules);
+        }
+    }
+
+    /**
+     * @return a new scanner, to be used by a single thread.
+     */
+    public Scanner newScanner() {
+        return new Scanner();
+    }
+
+    /**
+     * @return the estimated size of the automaton and of the dispatch table
+     *         in bytes.
+     */
+    public long ramBytesUsed() {
+        final long size = 12L * firstCharPoints.length + 8L * latinFirstCharRules.length;
+        if (automaton == null) {
+            return size;
+        }
+        return size + 8L * acceptedRules.length + 4L * automaton.getSize() * (automaton.getCharIntervals().length + 1);
+    }
+
+    /**
+     * Matches the rules of a lexer against a text. A scanner keeps the
+     * matchers of the rules, it is not thread-safe.
+     */
+    public final class Scanner {
+
+        private final Matcher[] matchers = new Matcher[rules.length];
+
+        /**
+         * The bound of the match of each rule, <tt>-1</tt> if the rule
+         * cannot match or has been verified.
+         */
+        private final int[] bounds = new int[rules.length];
+
+        private CharSequence input;
+
+        private LexerRule rule;
+
+        private int end;
+
+        Scanner() {
+        }
+
+        /**
+         * Sets the text to match.
+         */
+        public void reset(final CharSequence input) {
+            this.input = input;
+            for (final Matcher matcher : matchers) {
+                if (matcher != null) {
+                    matcher.reset(input);
+                }
+            }
+        }
+
+        /**
+         * Finds the rule matching the longest prefix of the region
+         * <tt>[start, end)</tt> of the text. The rules see the region as the
+         * whole text.
+         *
+         * @return <tt>true</tt> if a rule matches
+         */
+        public boolean lookingAt(final int start, final int end) {
+            final LexerStats stats = Lexer.this.stats;
+            computeBounds(start, end);
+            int best = -1;
+            int bestRule = -1;
+            while (true) {
+                // the greatest bound, the earliest rule on ties
+                int candidate = -1;
+                for (int i = 0; i < bounds.length; i++) {
+                    if (bounds[i] >= 0 && (candidate < 0 || bounds[i] > bounds[candidate])) {
+                        candidate = i;
+                    }
+                }
+                if (candidate < 0 || bounds[candidate] < best || (bounds[candidate] == best && candidate > bestRule)) {
+                    break;
+                }
+                bounds[candidate] = -1;
+                final Matcher matcher = matcher(candidate);
+                matcher.region(start, end);
+                final long startTime = stats != null ? System.nanoTime() : 0L;
+                final boolean matched = matcher.lookingAt();
+                if (stats != null) {
+                    stats.onAttempt(candidate, matched, System.nanoTime() - startTime);
+                }
+                if (matched) {
+                    final int length = matcher.end() - start;
+                    if (length > best || (length == best && candidate < bestRule)) {
+                        best = length;
+                        bestRule = candidate;
+                    }
+                }
+            }
+            if (bestRule < 0) {
+                rule = null;
+                this.end = -1;
+                return false;
+            }
+            if (stats != null) {
+                stats.onWin(bestRule);
+            }
+            rule = rules[bestRule];
+            this.end = start + best;
+            return true;
+        }
+
+        /**
+         * Runs the automaton from the start of the region, recording for each
+         * rule the longest prefix it accepts.
+         */
+        private void computeBounds(final int start, final int end) {
+            final int length = end - start;
+            final long candidates;
+            if (start == end) {
+                candidates = emptyRules;
+            } else if (Character.isSurrogate(input.charAt(start))) {
+                // supplementary characters are not compiled
+                candidates = compiledRules;
+            } else {
+                candidates = firstCharRules(input.charAt(start));
+            }
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = unbounded[i] ? length : -1;
+            }
+            if (automaton == null) {
+                addBounds(candidates, length);
+                return;
+            }
+            int state = 0;
+            addBounds(acceptedRules[state], 0);
+            for (int i = start; i < end; i++) {
+                final char c = input.charAt(i);
+                if (Character.isSurrogate(c)) {
+                    // supplementary characters are not compiled, the rules
+                    // which can start with the first character are verified
+                    addBounds(candidates, length);
+                    return;
+                }
+                state = automaton.step(state, c);
+                if (state < 0) {
+                    return;
+                }
+                addBounds(acceptedRules[state], i + 1 - start);
+            }
+        }
+
+        private void addBounds(long accepted, final int length) {
+            while (accepted != 0) {
+                bounds[Long.numberOfTrailingZeros(accepted)] = length;
+                accepted &= accepted - 1;
+            }
+        }
+
+        private Matcher matcher(final int i) {
+            Matcher matcher = matchers[i];
+            if (matcher == null) {
+                matcher = rules[i].getPattern().matcher(input);
+                matchers[i] = matcher;
+            }
+            return matcher;
+        }
+
+        /**
+         * @return the rule of the last match, or <tt>null</tt>.
+         */
+        public LexerRule rule() {
+            return rule;
+        }
+
+        /**
+         * @return the end of the last match in the text, or <tt>-1</tt>.
+         */
+        public int end() {
+            return end;
+        }
+    }
+
+    /**
+     * Compiles the subset of the Java regular expressions used by the lexer
+     * rules into automata over the characters of the Basic Multilingual
+     * Plane. The character classes are evaluated by {@link Pattern} itself,
+     * so they have the same meaning as in the rules. Lookarounds and anchors
+     * are replaced by the empty string, which only widens the language.
+     * Constructs which cannot be compiled, such as back references, fail
+     * with an {@link IllegalArgumentException}.
+     */
+    static final class RegexCompiler {
+
+        /**
+         * The automata of the character classes, by their source.
+         */
+        private final Map<String, Automaton> classes = new HashMap<>();
+
+        private String regex;
+
+        private int pos;
+
+        Automaton compile(final String regex) {
+            if (regex.isEmpty()) {
+                throw new IllegalArgumentException("empty rule");
+            }
+            this.regex = regex;
+            pos = 0;
+            final Automaton automaton = parseAlternation();
+            if (pos < regex.length()) {
+                throw error("unexpected character");
+            }
+            return automaton;
+        }
+
+        private Automaton parseAlternation() {
+            final List<Automaton> alternatives = new ArrayList<>();
+            alternatives.add(parseConcatenation());
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                alternatives.add(parseConcatenation());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : Operations.union(alternatives);
+        }
+
+        private Automaton parseConcatenation() {
+            final List<Automaton> terms = new ArrayList<>();
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                terms.add(parseRepetition());
+            }
+            if (terms.isEmpty()) {
+                return Automata.makeEmptyString();
+            }
+            return terms.size() == 1 ? terms.get(0) : Operations.concatenate(terms);
+        }
+
+        private Automaton parseRepetition() {
+            Automaton automaton = parseAtom();
+            while (pos < regex.length()) {
+                final char c = regex.charAt(pos);
+                if (c == '*') {
+                    pos++;
+                    automaton = Operations.repeat(automaton);
+                } else if (c == '+') {
+                    pos++;
+                    automaton = Operations.repeat(automaton, 1);
+                } else if (c == '?') {
+                    pos++;
+                    automaton = Operations.optional(automaton);
+                } else if (c == '{') {
+                    final int close = regex.indexOf('}', pos);
+                    if (close < 0) {
+                        throw error("unclosed repetition");
+                    }
+                    final String range = regex.substring(pos + 1, close);
+                    pos = close + 1;
+                    final int comma = range.indexOf(',');
+                    try {
+                        if (comma < 0) {
+                            final int n = Integer.parseInt(range);
+                            automaton = Operations.repeat(automaton, n, n);
+                        } else if (comma == range.length() - 1) {
+                            automaton = Operations.repeat(automaton, Integer.parseInt(range.substring(0, comma)));
+                        } else {
+                            automaton = Operations.repeat(automaton, Integer.parseInt(range.substring(0, comma)),
+                                    Integer.parseInt(range.substring(comma + 1)));
+                        }
+                    } catch (final NumberFormatException e) {
+                        throw error("invalid repetition");
+                    }
+                } else {
+                    break;
+                }
+                // lazy and possessive quantifiers match a subset of the ends
+                if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+                    pos++;
+                }
+            }
+            return automaton;
+        }
+
+        private Automaton parseAtom() {
+            final char c = regex.charAt(pos);
+            switch (c) {
+            case '(':
+                return parseGroup();
+            case '[':
+                return parseClass();
+            case '\\':
+                return parseEscape();
+            case '.':
+                pos++;
+                return characterClass(".");
+            case '^':
+            case '$':
+                pos++;
+                return Automata.makeEmptyString();
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw error("dangling quantifier");
+            default:
+                pos++;
+                return literal(c);
+            }
+        }
+
+        private Automaton parseGroup() {
+            pos++;
+            boolean lookaround = false;
+            if (regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+                pos += 2;
+            } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+                pos += 2;
+                lookaround = true;
+            } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+                pos += 3;
+                lookaround = true;
+            } else if (regex.startsWith("?<", pos)) {
+                final int close = regex.indexOf('>', pos);
+                if (close < 0) {
+                    throw error("unclosed group name");
+                }
+                pos = close + 1;
+            } else if (pos < regex.length() && regex.charAt(pos) == '?') {
+                throw error("unsupported group");
+            }
+            final Automaton automaton = parseAlternation();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw error("unclosed group");
+            }
+            pos++;
+            return lookaround ? Automata.makeEmptyString() : automaton;
+        }
+
+        private Automaton parseClass() {
+            final int start = pos;
+            int depth = 0;
+            while (pos < regex.length()) {
+                final char c = regex.charAt(pos);
+                if (c == '\\') {
+                    pos += 2;
+                    continue;
+                }
+                pos++;
+                if (c == '[') {
+                    depth++;
+                } else if (c == ']' && --depth == 0) {
+                    return characterClass(regex.substring(start, pos));
+                }
+            }
+            throw error("unclosed character class");
+        }
+
+        private Automaton parseEscape() {
+            if (pos + 1 >= regex.length()) {
+                throw error("trailing backslash");
+            }
+            final char c = regex.charAt(pos + 1);
+            switch (c) {
+            case 'd':
+            case 'D':
+            case 's':
+            case 'S':
+            case 'w':
+            case 'W':
+                pos += 2;
+                return characterClass(regex.substring(pos - 2, pos));
+            case 'p':
+            case 'P':
+                final int close = regex.indexOf('}', pos);
+                if (pos + 2 >= regex.length() || regex.charAt(pos + 2) != '{' || close < 0) {
+                    throw error("invalid property");
+                }
+                final String property = regex.substring(pos, close + 1);
+                pos = close + 1;
+                return characterClass(property);
+            case 't':
+                pos += 2;
+                return literal('\t');
+            case 'n':
+                pos += 2;
+                return literal('\n');
+            case 'r':
+                pos += 2;
+                return literal('\r');
+            case 'f':
+                pos += 2;
+                return literal('\f');
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    throw error("unsupported escape \\" + c);
+                }
+                pos += 2;
+                return literal(c);
+            }
+        }
+
+        private static Automaton literal(final char c) {
+            if (Character.isSurrogate(c)) {
+                throw new IllegalArgumentException("supplementary character");
+            }
+            return Automata.makeChar(c);
+        }
+
+        /**
+         * @return the automaton accepting the characters of the BMP, the
+         *         surrogates excepted, matched by a character class.
+         */
+        private Automaton characterClass(final String source) {
+            Automaton automaton = classes.get(source);
+            if (automaton == null) {
+                final OneChar text = new OneChar();
+                final Matcher matcher = Pattern.compile(source).matcher(text);
+                automaton = new Automaton();
+                final int initial = automaton.createState();
+                final int accept = automaton.createState();
+                automaton.setAccept(accept, true);
+                int rangeStart = -1;
+                for (int c = 0; c <= Character.MAX_VALUE + 1; c++) {
+                    boolean member = false;
+                    if (c <= Character.MAX_VALUE && !Character.isSurrogate((char) c)) {
+                        text.c = (char) c;
+                        member = matcher.reset().matches();
+                    }
+                    if (member && rangeStart < 0) {
+                        rangeStart = c;
+                    } else if (!member && rangeStart >= 0) {
+                        automaton.addTransition(initial, accept, rangeStart, c - 1);
+                        rangeStart = -1;
+                    }
+                }
+                automaton.finishState();
+                classes.put(source, automaton);
+            }
+            return automaton;
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(message + " at " + pos + " in " + regex);
+        }
+    }
+
+    /**
+     * A text of one character, changed in place to test the characters one
+     * by one against a character class.
+     */
+    private static final class OneChar implements CharSequence {
+
+        char c;
+
+        @Override
+        public int length() {
+            return 1;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return c;
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return String.valueOf(c).subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(c);
+        }
+    }
+}
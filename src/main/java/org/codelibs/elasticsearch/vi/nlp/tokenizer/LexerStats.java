@@ -0,0 +1,112 @@
+package org.codelibs.elasticsearch.vi.nlp.tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.LexerRule;
+
+/**
+ * The work of each rule of a {@link Lexer}: how many times its regular
+ * expression was run, how many times it matched, how many tokens it won and
+ * the time spent in it. The rules discarded by the automaton or the first
+ * character of a token are not run, so they are neither attempted nor timed.
+ * <p>
+ * The counters are {@link LongAdder}s, the scanners of several threads
+ * record to the same statistics.
+ */
+public class LexerStats {
+
+    private final LexerRule[] rules;
+
+    private final LongAdder[] attempts;
+
+    private final LongAdder[] matches;
+
+    private final LongAdder[] wins;
+
+    private final LongAdder[] nanos;
+
+    /**
+     * @param rules the rules of the lexer, by decreasing priority
+     */
+    public LexerStats(final LexerRule[] rules) {
+        this.rules = rules;
+        attempts = newAdders(rules.length);
+        matches = newAdders(rules.length);
+        wins = newAdders(rules.length);
+        nanos = newAdders(rules.length);
+    }
+
+    private static LongAdder[] newAdders(final int size) {
+        final LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    void onAttempt(final int rule, final boolean matched, final long tookNanos) {
+        attempts[rule].increment();
+        if (matched) {
+            matches[rule].increment();
+        }
+        nanos[rule].add(tookNanos);
+    }
+
+    void onWin(final int rule) {
+        wins[rule].increment();
+    }
+
+    /**
+     * @return the rules, by decreasing priority.
+     */
+    public LexerRule[] getRules() {
+        return rules;
+    }
+
+    public long getAttempts(final int rule) {
+        return attempts[rule].sum();
+    }
+
+    public long getMatches(final int rule) {
+        return matches[rule].sum();
+    }
+
+    public long getWins(final int rule) {
+        return wins[rule].sum();
+    }
+
+    public long getNanos(final int rule) {
+        return nanos[rule].sum();
+    }
+
+    /**
+     * @return the names of the rules which have not won any token.
+     */
+    public List<String> getNeverWon() {
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < rules.length; i++) {
+            if (getWins(i) == 0) {
+                names.add(rules[i].getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return a table of the counters of the rules, one line per rule in
+     *         priority order, the rules which have not won any token being
+     *         flagged.
+     */
+    public String report() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append(String.format(Locale.ROOT, "%-20s %12s %12s %12s %12s%n", "rule", "attempts", "matches", "wins", "time (ms)"));
+        for (int i = 0; i < rules.length; i++) {
+            buf.append(String.format(Locale.ROOT, "%-20s %12d %12d %12d %12.1f%s%n", rules[i].getName(), getAttempts(i),
+                    getMatches(i), getWins(i), getNanos(i) / 1e6, getWins(i) == 0 ? "  never wins" : ""));
+        }
+        return buf.toString();
+    }
+}
@@ -34,7 +34,8 @@ public class ResultMerger {
         TaggedWord taggedWord = null;
         if (nextToken.isDateDay()) {
             final String text = day.getText() + " " + nextToken.getText();
-            taggedWord = new TaggedWord(nextToken.getRule(), text, nextToken.getLine(), day.getColumn());
+            taggedWord = new TaggedWord(nextToken.getRule(), text, nextToken.getLine(), day.getColumn(), day.getStartOffset(),
+                    nextToken.getEndOffset());
         }
         return taggedWord;
     }
@@ -43,7 +44,8 @@ public class ResultMerger {
         TaggedWord taggedWord = null;
         if (nextToken.isDateMonth()) {
             final String text = month.getText() + " " + nextToken.getText();
-            taggedWord = new TaggedWord(nextToken.getRule(), text, nextToken.getLine(), month.getColumn());
+            taggedWord = new TaggedWord(nextToken.getRule(), text, nextToken.getLine(), month.getColumn(), month.getStartOffset(),
+                    nextToken.getEndOffset());
         }
         return taggedWord;
     }
@@ -53,7 +55,8 @@ public class ResultMerger {
         // merge the date year or a number
         if (nextToken.isDateYear() || nextToken.isNumber()) {
             final String text = year.getText() + " " + nextToken.getText();
-            taggedWord = new TaggedWord(nextToken.getRule(), text, nextToken.getLine(), year.getColumn());
+            taggedWord = new TaggedWord(nextToken.getRule(), text, nextToken.getLine(), year.getColumn(), year.getStartOffset(),
+                    nextToken.getEndOffset());
         }
         return taggedWord;
     }
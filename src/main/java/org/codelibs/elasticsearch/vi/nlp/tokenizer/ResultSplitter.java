@@ -13,6 +13,7 @@ import org.codelibs.elasticsearch.vi.nlp.lexicon.jaxb.Corpus;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.jaxb.W;
 import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.LexerRule;
 import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.TaggedWord;
+import org.codelibs.elasticsearch.vi.nlp.utils.RamUsage;
 
 /**
  * @author LE HONG Phuong, phuonglh@gmail.com
@@ -24,6 +25,10 @@ import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.TaggedWord;
  */
 public class ResultSplitter {
 
+    private static final LexerRule NAME_PREFIX_RULE = new LexerRule("name:prefix");
+
+    private static final LexerRule NAME_RULE = new LexerRule("name");
+
     /**
      * Set of predefined prefixes.
      */
@@ -61,6 +66,13 @@ public class ResultSplitter {
         this(properties.getProperty("namedEntityPrefix"));
     }
 
+    /**
+     * @return the estimated size of the prefixes in bytes.
+     */
+    public long ramBytesUsed() {
+        return RamUsage.sizeOf(prefix);
+    }
+
     private boolean isPrefix(final String syllable) {
         return prefix.contains(syllable.toLowerCase());
     }
@@ -78,10 +90,17 @@ public class ResultSplitter {
             if (isPrefix(syllables[0])) {
                 final int position = syllables[0].length() + 1;
                 // it is sure that postion > 0
-                final String suffix = token.getText().substring(position);
+                final String suffix = token.getText().substring(position).trim();
                 final TaggedWord[] result = new TaggedWord[2];
-                result[0] = new TaggedWord(new LexerRule("name:prefix"), syllables[0]);
-                result[1] = new TaggedWord(new LexerRule("name"), suffix.trim());
+                result[0] = new TaggedWord(NAME_PREFIX_RULE, syllables[0]);
+                result[1] = new TaggedWord(NAME_RULE, suffix);
+                if (token.getStartOffset() >= 0) {
+                    // the prefix starts the token and the suffix ends it
+                    result[0].setStartOffset(token.getStartOffset());
+                    result[0].setEndOffset(token.getStartOffset() + syllables[0].length());
+                    result[1].setStartOffset(token.getEndOffset() - suffix.length());
+                    result[1].setEndOffset(token.getEndOffset());
+                }
                 return result;
             }
         }
@@ -14,8 +14,6 @@ import java.util.Properties;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.codelibs.elasticsearch.vi.nlp.fsm.IConstants;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.LexiconUnmarshaller;
@@ -41,6 +39,16 @@ public class Tokenizer {
      */
     private LexerRule rules[] = new LexerRule[0];
 
+    /**
+     * The lexer of the rules, which may be shared with other tokenizers
+     */
+    private final Lexer lexer;
+
+    /**
+     * Matches the lexer rules against the current line
+     */
+    private final Lexer.Scanner scanner;
+
     /**
      * The current input stream
      */
@@ -56,6 +64,16 @@ public class Tokenizer {
      */
     private String line;
 
+    /**
+     * Position of the next token in the current line
+     */
+    private int pos;
+
+    /**
+     * End of the rest of the current line, trimmed once a token has been read
+     */
+    private int end;
+
     /**
      * Current column
      */
@@ -96,7 +114,9 @@ public class Tokenizer {
      */
     public Tokenizer(final String lexersFilename, final Segmenter segmenter) {
         // load the lexer rules
-        loadLexerRules(lexersFilename);
+        lexer = loadLexer(lexersFilename);
+        rules = lexer.getRules();
+        scanner = lexer.newScanner();
         this.segmenter = segmenter;
         result = new ArrayList<>();
         // use a plain (default) outputer
@@ -120,7 +140,20 @@ public class Tokenizer {
      */
     public Tokenizer(final Properties properties, final Segmenter segmenter) {
         // load the lexer rules
-        loadLexerRules(properties.getProperty("lexers"));
+        this(properties, loadLexer(properties.getProperty("lexers")), segmenter);
+    }
+
+    /**
+     * Creates a tokenizer from a properties object, a lexer and a segmenter.
+     * The lexer is only read, it may be shared with other tokenizers.
+     * @param properties
+     * @param lexer the lexer of the rules
+     * @param segmenter
+     */
+    public Tokenizer(final Properties properties, final Lexer lexer, final Segmenter segmenter) {
+        this.lexer = lexer;
+        rules = lexer.getRules();
+        scanner = lexer.newScanner();
         this.segmenter = segmenter;
         result = new ArrayList<>();
         // use a plain (default) outputer
@@ -178,8 +211,9 @@ public class Tokenizer {
      *
      * @param lexersFilename
      *            specification file
+     * @return the lexer of the rules
      */
-    private void loadLexerRules(final String lexersFilename) {
+    private static Lexer loadLexer(final String lexersFilename) {
         final LexiconUnmarshaller unmarshaller = new LexiconUnmarshaller();
         final Corpus corpus = unmarshaller.unmarshal(lexersFilename);
         final ArrayList<LexerRule> ruleList = new ArrayList<>();
@@ -188,8 +222,7 @@ public class Tokenizer {
             final LexerRule lr = new LexerRule(w.getMsd(), w.getContent());
             ruleList.add(lr);
         }
-        // convert the list of rules to an array and save it
-        rules = ruleList.toArray(rules);
+        return new Lexer(ruleList);
     }
 
     /**
@@ -322,7 +355,7 @@ public class Tokenizer {
      */
     private TaggedWord getNextToken() throws IOException {
         // scan the file line by line and quit when no more lines are left
-        if (line == null || line.length() == 0) {
+        if (line == null || pos >= end) {
             line = lineReader.readLine();
             if (line == null) {
                 if (inputStream != null) {
@@ -331,6 +364,9 @@ public class Tokenizer {
                 lineReader = null;
                 return null;
             }
+            pos = 0;
+            end = line.length();
+            scanner.reset(line);
             // an empty line corresponds to an empty tagged word
             if (line.trim().length() == 0) {
 
@@ -344,54 +380,45 @@ public class Tokenizer {
         TaggedWord token = null;
         // the end of the next token, within the line
         int tokenEnd = -1;
-        // the length of the rule that matches the most characters from the
-        // input
-        int longestMatchLen = -1;
         final int lineNumber = lineReader.getLineNumber();
         LexerRule selectedRule = null;
         // find the rule that matches the longest substring of the input
-        for (final LexerRule rule : rules) {
-            // get the precompiled pattern for this rule
-            final Pattern pattern = rule.getPattern();
-            // create a matcher to perform match operations on the string
-            // by interpreting the pattern
-            final Matcher matcher = pattern.matcher(line);
-            // find the longest match from the start
-            if (matcher.lookingAt()) {
-                final int matchLen = matcher.end();
-                if (matchLen > longestMatchLen) {
-                    longestMatchLen = matchLen;
-                    tokenEnd = matchLen;
-                    selectedRule = rule;
-                }
-            }
+        if (scanner.lookingAt(pos, end)) {
+            tokenEnd = scanner.end();
+            selectedRule = scanner.rule();
         }
         //
         // check if this relates to an email address (to fix an error with email)
         // yes, I know that this "manual" method must be improved by a more general way.
         // But at least, it can fix an error with email addresses at the moment. :-)
         int endIndex = tokenEnd;
-        if (tokenEnd < line.length()) {
+        if (tokenEnd < end) {
             if (line.charAt(tokenEnd) == '@') {
-                while (endIndex > 0 && line.charAt(endIndex) != ' ') {
+                while (endIndex > pos && line.charAt(endIndex) != ' ') {
                     endIndex--;
                 }
             }
         }
         // the following statement fixes the error reported by hiepnm, for the case like "(School@net)"
-        if (endIndex == 0) {
+        if (endIndex == pos) {
             endIndex = tokenEnd;
         }
 
         if (selectedRule == null) {
             selectedRule = new LexerRule("word");
         }
-        final String text = line.substring(0, endIndex);
+        final String text = line.substring(pos, endIndex);
         token = new TaggedWord(selectedRule, text, lineNumber, column);
-        // we match something, skip past the token, get ready
-        // for the next match, and return the token
-        column += endIndex;
-        line = line.substring(endIndex).trim();
+        // we match something, skip past the token and the blanks around the
+        // rest of the line, get ready for the next match, and return the token
+        column += endIndex - pos;
+        pos = endIndex;
+        while (pos < end && line.charAt(pos) <= ' ') {
+            pos++;
+        }
+        while (end > pos && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
         return token;
     }
 
@@ -518,6 +545,14 @@ public class Tokenizer {
         return segmenter;
     }
 
+    /**
+     * Return the lexer of the rules, whose statistics can be enabled
+     * @return
+     */
+    public Lexer getLexer() {
+        return lexer;
+    }
+
     /**
      * @author Le Hong Phuong, phuonglh@gmail.com
      * <p>
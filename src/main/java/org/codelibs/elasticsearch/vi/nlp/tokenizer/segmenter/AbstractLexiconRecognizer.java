@@ -20,8 +20,23 @@ public abstract class AbstractLexiconRecognizer {
      */
     public abstract boolean accept(String token);
 
+    /**
+     * @return the number of syllables of the longest word of the lexicon, no
+     * longer word is accepted. The default is not bounded.
+     */
+    public int getMaxSyllables() {
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * Dispose the recognizer for saving space.
      */
     public abstract void dispose();
+
+    /**
+     * @return the estimated size of the lexicon in bytes.
+     */
+    public long ramBytesUsed() {
+        return 0;
+    }
 }
@@ -21,4 +21,20 @@ public abstract class AbstractResolver {
      * @return the most probable segmentation
      */
     public abstract String[] resolve(List<String[]> segmentations);
+
+    /**
+     * @param segmentation a segmentation of a phrase
+     * @return the score the resolver gives to the segmentation, the higher
+     * the more probable, or <tt>0</tt> if the resolver does not score.
+     */
+    public long score(final String[] segmentation) {
+        return 0;
+    }
+
+    /**
+     * @return the estimated size of the model of the resolver in bytes.
+     */
+    public long ramBytesUsed() {
+        return 0;
+    }
 }
@@ -7,8 +7,8 @@ package org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codelibs.elasticsearch.vi.nlp.fsm.IConstants;
+import org.codelibs.elasticsearch.vi.nlp.fsm.fsa.CompactDFA;
 import org.codelibs.elasticsearch.vi.nlp.fsm.fsa.DFA;
-import org.codelibs.elasticsearch.vi.nlp.fsm.fsa.DFASimulator;
 import org.codelibs.elasticsearch.vi.nlp.fsm.io.FSMUnmarshaller;
 
 /**
@@ -19,35 +19,36 @@ import org.codelibs.elasticsearch.vi.nlp.fsm.io.FSMUnmarshaller;
  * Nov 12, 2007, 8:44:14 PM
  * <p>
  * A recognizer for Vietnamese lexicon that uses an internal DFA representation.
+ * <p>
+ * The lexicon DFA is kept in a {@link CompactDFA}, which is immutable, so the
+ * recognizer can be shared by all threads.
  */
 public final class DFALexiconRecognizer extends AbstractLexiconRecognizer {
 
     private static final Logger logger = LogManager.getLogger(DFALexiconRecognizer.class);
 
-    private static DFA lexiconDFA = null;
-
-    private static DFASimulator simulator = null;
-
     private static DFALexiconRecognizer recognizer = null;
 
+    private final CompactDFA lexiconDFA;
+
     /**
-     * Private constructor.
+     * Creates a recognizer which owns its lexicon DFA, the DFA is freed with
+     * the recognizer.
      * @param dfaLexiconFilename
      */
-    private DFALexiconRecognizer(final String dfaLexiconFilename) {
-        if (lexiconDFA == null) {
-            // build the lexicon DFA
-            logger.info("Load the lexicon automaton... ");
-            lexiconDFA = (DFA) new FSMUnmarshaller().unmarshal(dfaLexiconFilename, IConstants.FSM_DFA);
-            logger.info("OK.");
-        }
+    public DFALexiconRecognizer(final String dfaLexiconFilename) {
+        // build the lexicon DFA
+        logger.info("Load the lexicon automaton... ");
+        final DFA dfa = (DFA) new FSMUnmarshaller().unmarshal(dfaLexiconFilename, IConstants.FSM_DFA);
+        lexiconDFA = new CompactDFA(dfa);
+        logger.info("OK.");
     }
 
     /**
      * @param dfaLexiconFilename the DFA lexicon filen
      * @return The singleton instance of the lexicon DFA.
      */
-    public static DFALexiconRecognizer getInstance(final String dfaLexiconFilename) {
+    public static synchronized DFALexiconRecognizer getInstance(final String dfaLexiconFilename) {
         if (recognizer == null) {
             recognizer = new DFALexiconRecognizer(dfaLexiconFilename);
         }
@@ -55,13 +56,10 @@ public final class DFALexiconRecognizer extends AbstractLexiconRecognizer {
     }
 
     /**
-     * @return the DFA simulator
+     * @return the lexicon automaton
      */
-    private DFASimulator getDFASimulator() {
-        if (simulator == null) {
-            simulator = (DFASimulator) lexiconDFA.getSimulator();
-        }
-        return simulator;
+    public CompactDFA getLexiconDFA() {
+        return lexiconDFA;
     }
 
     /* (non-Javadoc)
@@ -69,7 +67,12 @@ public final class DFALexiconRecognizer extends AbstractLexiconRecognizer {
      */
     @Override
     public boolean accept(final String token) {
-        return getDFASimulator().accept(token);
+        return lexiconDFA.accept(token);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return lexiconDFA.ramBytesUsed();
     }
 
     /* (non-Javadoc)
@@ -77,6 +80,6 @@ public final class DFALexiconRecognizer extends AbstractLexiconRecognizer {
      */
     @Override
     public void dispose() {
-        lexiconDFA.dispose();
+        // the automaton is shared and immutable, nothing to release
     }
 }
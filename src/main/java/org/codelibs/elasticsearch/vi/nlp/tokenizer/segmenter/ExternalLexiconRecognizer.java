@@ -3,8 +3,10 @@
  */
 package org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 import java.util.Set;
 
@@ -13,6 +15,7 @@ import org.apache.logging.log4j.Logger;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.LexiconUnmarshaller;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.jaxb.Corpus;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.jaxb.W;
+import org.codelibs.elasticsearch.vi.nlp.utils.RamUsage;
 
 /**
  * @author LE HONG Phuong, phuonglh@gmail.com
@@ -29,6 +32,8 @@ public class ExternalLexiconRecognizer extends AbstractLexiconRecognizer {
 
     private Set<String> externalLexicon;
 
+    private int maxSyllables;
+
     /**
      * Default constructor.
      */
@@ -49,8 +54,9 @@ public class ExternalLexiconRecognizer extends AbstractLexiconRecognizer {
         externalLexicon = new HashSet<>();
         // add all prefixes to the set after converting them to lowercase
         for (final W w : ws) {
-            externalLexicon.add(w.getContent().toLowerCase());
+            externalLexicon.add(w.getContent().toLowerCase(Locale.ROOT));
         }
+        maxSyllables = countMaxSyllables(externalLexicon);
         logger.info("External lexicon loaded.");
     }
 
@@ -58,6 +64,43 @@ public class ExternalLexiconRecognizer extends AbstractLexiconRecognizer {
         this(properties.getProperty("externalLexicon"));
     }
 
+    /**
+     * Creates an external lexicon recognizer given the words of a lexicon.
+     * @param words the words of the lexicon
+     */
+    public ExternalLexiconRecognizer(final Collection<String> words) {
+        this(words, null);
+    }
+
+    /**
+     * Creates an external lexicon recognizer given the words of a lexicon,
+     * whose accents are normalized as those of the phrases to segment.
+     * @param words the words of the lexicon
+     * @param normalizer the string normalizer of the segmenter, or <tt>null</tt>
+     */
+    public ExternalLexiconRecognizer(final Collection<String> words, final StringNormalizer normalizer) {
+        externalLexicon = new HashSet<>();
+        for (final String word : words) {
+            final String lowerWord = word.toLowerCase(Locale.ROOT);
+            externalLexicon.add(normalizer != null ? normalizer.normalize(lowerWord) : lowerWord);
+        }
+        maxSyllables = countMaxSyllables(externalLexicon);
+    }
+
+    private static int countMaxSyllables(final Set<String> words) {
+        int max = 0;
+        for (final String word : words) {
+            int syllables = 1;
+            for (int i = 0; i < word.length(); i++) {
+                if (word.charAt(i) == ' ') {
+                    syllables++;
+                }
+            }
+            max = Math.max(max, syllables);
+        }
+        return max;
+    }
+
     /* (non-Javadoc)
      * @see org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.AbstractLexiconRecognizer#accept(java.lang.String)
      */
@@ -66,6 +109,17 @@ public class ExternalLexiconRecognizer extends AbstractLexiconRecognizer {
         return externalLexicon.contains(token);
     }
 
+    @Override
+    public int getMaxSyllables() {
+        return maxSyllables;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        final Set<String> lexicon = externalLexicon;
+        return lexicon == null ? 0 : RamUsage.sizeOf(lexicon);
+    }
+
     /* (non-Javadoc)
      * @see org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.AbstractLexiconRecognizer#dispose()
      */
@@ -0,0 +1,158 @@
+package org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How a phrase has been segmented: the word lattice built on its syllables,
+ * the shortest paths of the lattice, the scores given to them by the resolver
+ * and the time spent in each step.
+ * <p>
+ * An explanation is filled by
+ * {@link Segmenter#segment(String, AbstractLexiconRecognizer, SegmentationExplanation)}
+ * and {@link Segmenter#resolveAmbiguity(List, SegmentationExplanation)}.
+ */
+public class SegmentationExplanation {
+
+    private final String phrase;
+
+    private final int startOffset;
+
+    private String[] syllables;
+
+    /**
+     * The edges of the lattice, as <tt>{from, to, weight}</tt> triples.
+     */
+    private final List<double[]> edges = new ArrayList<>();
+
+    private List<String[]> paths;
+
+    private long[] scores;
+
+    private int choice = -1;
+
+    private long graphNanos;
+
+    private long pathNanos;
+
+    private long resolutionNanos;
+
+    /**
+     * @param phrase the phrase to explain
+     * @param startOffset the offset of the phrase in the input
+     */
+    public SegmentationExplanation(final String phrase, final int startOffset) {
+        this.phrase = phrase;
+        this.startOffset = startOffset;
+    }
+
+    void setSyllables(final String[] syllables) {
+        this.syllables = syllables;
+    }
+
+    void addEdge(final int from, final int to, final double weight) {
+        edges.add(new double[] { from, to, weight });
+    }
+
+    void setPaths(final List<String[]> paths, final long graphNanos, final long pathNanos) {
+        this.paths = paths;
+        this.graphNanos = graphNanos;
+        this.pathNanos = pathNanos;
+        if (paths.size() == 1) {
+            choice = 0;
+        }
+    }
+
+    void setScores(final long[] scores, final String[] resolved, final long resolutionNanos) {
+        this.scores = scores;
+        this.resolutionNanos = resolutionNanos;
+        choice = paths.indexOf(resolved);
+    }
+
+    public String getPhrase() {
+        return phrase;
+    }
+
+    /**
+     * @return the offset of the phrase in the input.
+     */
+    public int getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * @return the shortest paths, or <tt>null</tt> before the segmentation.
+     */
+    public List<String[]> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @return the position of the chosen path, or <tt>-1</tt>.
+     */
+    public int getChoice() {
+        return choice;
+    }
+
+    public long getGraphNanos() {
+        return graphNanos;
+    }
+
+    public long getPathNanos() {
+        return pathNanos;
+    }
+
+    public long getResolutionNanos() {
+        return resolutionNanos;
+    }
+
+    /**
+     * @return the explanation as a tree of maps, lists, strings and numbers.
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("phrase", phrase);
+        if (syllables != null) {
+            map.put("syllables", Arrays.asList(syllables));
+        }
+        final List<Object> edgeList = new ArrayList<>(edges.size());
+        for (final double[] edge : edges) {
+            final int from = (int) edge[0];
+            final int to = (int) edge[1];
+            final Map<String, Object> edgeMap = new LinkedHashMap<>();
+            edgeMap.put("from", from);
+            edgeMap.put("to", to);
+            if (syllables != null) {
+                edgeMap.put("word", String.join(" ", Arrays.asList(syllables).subList(from, to)));
+            }
+            edgeMap.put("weight", edge[2]);
+            edgeList.add(edgeMap);
+        }
+        map.put("edges", edgeList);
+        if (paths != null) {
+            final List<Object> pathList = new ArrayList<>(paths.size());
+            for (int i = 0; i < paths.size(); i++) {
+                final Map<String, Object> pathMap = new LinkedHashMap<>();
+                pathMap.put("words", Arrays.asList(paths.get(i)));
+                if (scores != null) {
+                    pathMap.put("score", scores[i]);
+                }
+                pathMap.put("chosen", i == choice);
+                pathList.add(pathMap);
+            }
+            map.put("paths", pathList);
+        }
+        map.put("graph_nanos", graphNanos);
+        map.put("path_nanos", pathNanos);
+        map.put("resolution_nanos", resolutionNanos);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
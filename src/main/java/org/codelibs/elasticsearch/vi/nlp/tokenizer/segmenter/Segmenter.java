@@ -5,11 +5,18 @@
 package org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.codelibs.elasticsearch.vi.nlp.fsm.fsa.CompactDFA;
 import org.codelibs.elasticsearch.vi.nlp.graph.AdjacencyListWeightedGraph;
 import org.codelibs.elasticsearch.vi.nlp.graph.Edge;
 import org.codelibs.elasticsearch.vi.nlp.graph.IGraph;
@@ -17,6 +24,7 @@ import org.codelibs.elasticsearch.vi.nlp.graph.IWeightedGraph;
 import org.codelibs.elasticsearch.vi.nlp.graph.Node;
 import org.codelibs.elasticsearch.vi.nlp.graph.io.GraphIO;
 import org.codelibs.elasticsearch.vi.nlp.graph.search.ShortestPathFinder;
+import org.codelibs.elasticsearch.vi.nlp.graph.util.EdgeIterator;
 import org.codelibs.elasticsearch.vi.nlp.graph.util.GraphConnectivity;
 import org.codelibs.elasticsearch.vi.nlp.utils.CaseConverter;
 
@@ -40,46 +48,46 @@ import org.codelibs.elasticsearch.vi.nlp.utils.CaseConverter;
  */
 public class Segmenter {
 
-    private static StringNormalizer normalizer;
-
     private static final Logger logger = LogManager.getLogger(Segmenter.class);
 
+    private final StringNormalizer normalizer;
+
     /**
      * The DFA representing Vietnamese lexicon (the internal lexicon).
      */
-    private static AbstractLexiconRecognizer lexiconRecognizer;
+    private final DFALexiconRecognizer lexiconRecognizer;
 
     /**
      * The external lexicon recognizer.
      */
-    private static AbstractLexiconRecognizer externalLexiconRecognizer;
+    private final AbstractLexiconRecognizer externalLexiconRecognizer;
+
+    /**
+     * The user lexicon recognizer, which may be replaced at any time, or
+     * <tt>null</tt>. A segmentation uses the recognizer got at its beginning.
+     */
+    private final Supplier<? extends AbstractLexiconRecognizer> userLexiconRecognizer;
 
     /**
-     * Result of the segmentation. A segmentation can have several results.
-     * Each result is represented by an array of words.
+     * The user lexicon recognizer last supplied, and the same lexicon whose
+     * accents are normalized by this segmenter.
      */
-    private final List<String[]> result;
+    private volatile AbstractLexiconRecognizer[] normalizedUserLexicon;
 
     /**
      * An ambiguity resolver.
      */
-    private AbstractResolver resolver = null;
+    private final AbstractResolver resolver;
 
-    private static double MAX_EDGE_WEIGHT = 100;
+    private static final double MAX_EDGE_WEIGHT = 100;
 
-    private static boolean DEBUG = false;
+    private static final boolean DEBUG = false;
 
     /**
      * Default constructor.
      */
     public Segmenter() {
-        result = new ArrayList<>();
-        // create DFA lexicon recognizer
-        getDFALexiconRecognizer();
-        // create external lexicon recognizer
-        getExternalLexiconRecognizer();
-        // create a string normalizer
-        normalizer = StringNormalizer.getInstance();
+        this((AbstractResolver) null);
     }
 
     /**
@@ -87,7 +95,13 @@ public class Segmenter {
      * @param resolver
      */
     public Segmenter(final AbstractResolver resolver) {
-        this();
+        // create DFA lexicon recognizer
+        lexiconRecognizer = DFALexiconRecognizer.getInstance(IConstants.LEXICON_DFA);
+        // create external lexicon recognizer
+        externalLexiconRecognizer = new ExternalLexiconRecognizer();
+        // create a string normalizer
+        normalizer = StringNormalizer.getInstance();
+        userLexiconRecognizer = null;
         this.resolver = resolver;
     }
 
@@ -97,24 +111,28 @@ public class Segmenter {
      * @param resolver
      */
     public Segmenter(final Properties properties, final AbstractResolver resolver) {
-        result = new ArrayList<>();
+        this(properties, resolver, null);
+    }
+
+    /**
+     * Build a segmenter with a properties object, an ambiguity resolver and
+     * a user lexicon.
+     * @param properties
+     * @param resolver
+     * @param userLexiconRecognizer supplies the current user lexicon recognizer
+     */
+    public Segmenter(final Properties properties, final AbstractResolver resolver,
+            final Supplier<? extends AbstractLexiconRecognizer> userLexiconRecognizer) {
         // create DFA lexicon recognizer
-        getDFALexiconRecognizer(properties);
+        lexiconRecognizer = new DFALexiconRecognizer(properties.getProperty("lexiconDFA"));
         // create external lexicon recognizer
-        getExternalLexiconRecognizer(properties);
+        externalLexiconRecognizer = new ExternalLexiconRecognizer(properties);
         // create a string normalizer
         normalizer = StringNormalizer.getInstance(properties);
+        this.userLexiconRecognizer = userLexiconRecognizer;
         this.resolver = resolver;
     }
 
-    /**
-     * @return The result list. Each element of the list is a possible segmentation.
-     * The list is normally contains less than 4 results.
-     */
-    public List<String[]> getResult() {
-        return result;
-    }
-
     /**
      * A pre-processing of segmentation. If the first character of the phrase is
      * an uppercase, then it is converted to the corresponding lowercase; all
@@ -125,7 +143,7 @@ public class Segmenter {
      *            a phrase to segment
      * @return a phrase after pre-process
      */
-    private static String normalize(final String phrase) {
+    private String normalize(final String phrase) {
         // 1. change the case of the first character.
         //
         final StringBuffer s = new StringBuffer(phrase);
@@ -142,12 +160,50 @@ public class Segmenter {
         return normalizer.normalize(s.toString());
     }
 
+    /**
+     * Creates a recognizer of words, which are lowercased and whose accents
+     * are normalized as those of the phrases, so that a word such as
+     * <tt>hòa bình</tt> is recognized in the phrase <tt>Hòa bình</tt>.
+     * @param words the words of the lexicon
+     * @return the lexicon recognizer.
+     */
+    public ExternalLexiconRecognizer newLexiconRecognizer(final Collection<String> words) {
+        return new ExternalLexiconRecognizer(words, normalizer);
+    }
+
+    /**
+     * @return the current user lexicon recognizer with its words normalized
+     *         by {@link #newLexiconRecognizer(Collection)}, or <tt>null</tt>.
+     *         The normalized lexicon is built again only when the supplied
+     *         recognizer changes.
+     */
+    private AbstractLexiconRecognizer getUserLexicon() {
+        if (userLexiconRecognizer == null) {
+            return null;
+        }
+        final AbstractLexiconRecognizer userLexicon = userLexiconRecognizer.get();
+        if (!(userLexicon instanceof ExternalLexiconRecognizer)) {
+            return userLexicon;
+        }
+        final AbstractLexiconRecognizer[] normalized = normalizedUserLexicon;
+        if (normalized != null && normalized[0] == userLexicon) {
+            return normalized[1];
+        }
+        final AbstractLexiconRecognizer recognizer =
+                newLexiconRecognizer(((ExternalLexiconRecognizer) userLexicon).getExternalLexicon());
+        normalizedUserLexicon = new AbstractLexiconRecognizer[] { userLexicon, recognizer };
+        return recognizer;
+    }
+
     /**
      * @param syllables an array of syllables (a phrase)
+     * @param userLexicon the user lexicon recognizer, or <tt>null</tt>
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
      * @return a weighted digraph representing the phrase to be segmented. The maximum weight
      * of edges is 1.
      */
-    private IWeightedGraph makeGraph(final String[] syllables) {
+    private IWeightedGraph makeGraph(final String[] syllables, final AbstractLexiconRecognizer userLexicon,
+            final AbstractLexiconRecognizer overlay) {
         final int nV = syllables.length + 1;
         final IWeightedGraph graph = new AdjacencyListWeightedGraph(nV, true);
         for (int i = 0; i < nV - 1; i++) {
@@ -162,7 +218,8 @@ public class Segmenter {
                 }
                 // check to see if the word is accepted or not
                 // and create corresponding edges
-                if (getDFALexiconRecognizer().accept(word) || getExternalLexiconRecognizer().accept(word)) {
+                if (lexiconRecognizer.accept(word) || externalLexiconRecognizer.accept(word)
+                        || (userLexicon != null && userLexicon.accept(word)) || (overlay != null && overlay.accept(word))) {
                     // calculate the weight of the edge (i,i+j+1)
                     double weight = (double) 1 / (j + 1);
                     // keep only two decimal digits of weight
@@ -177,55 +234,6 @@ public class Segmenter {
         return graph;
     }
 
-    /**
-     * Creates an internal lexicon recognizer.
-     * @return the DFA lexicon recognizer in use
-     */
-    private AbstractLexiconRecognizer getDFALexiconRecognizer() {
-        if (lexiconRecognizer == null) {
-            // use the DFA lexicon recognizer
-            // user can use any lexicon recognizer here.
-            lexiconRecognizer = DFALexiconRecognizer.getInstance(IConstants.LEXICON_DFA);
-        }
-        return lexiconRecognizer;
-    }
-
-    /**
-     * Creates an internal lexicon recognizer.
-     * @return the DFA lexicon recognizer in use
-     */
-    private AbstractLexiconRecognizer getDFALexiconRecognizer(final Properties properties) {
-        if (lexiconRecognizer == null) {
-            // use the DFA lexicon recognizer
-            // user can use any lexicon recognizer here.
-            lexiconRecognizer = DFALexiconRecognizer.getInstance(properties.getProperty("lexiconDFA"));
-        }
-        return lexiconRecognizer;
-    }
-
-    /**
-     * Creates an external lexicon recognizer.
-     * @return the external lexicon recognizer
-     */
-    private AbstractLexiconRecognizer getExternalLexiconRecognizer() {
-        if (externalLexiconRecognizer == null) {
-            externalLexiconRecognizer = new ExternalLexiconRecognizer();
-        }
-        return externalLexiconRecognizer;
-    }
-
-    /**
-     * Creates an external lexicon recognizer.
-     * @param properties
-     * @return the external lexicon recognizer
-     */
-    private AbstractLexiconRecognizer getExternalLexiconRecognizer(final Properties properties) {
-        if (externalLexiconRecognizer == null) {
-            externalLexiconRecognizer = new ExternalLexiconRecognizer(properties);
-        }
-        return externalLexiconRecognizer;
-    }
-
     /**
      * Try to connect an unconnected graph. If a graph is unconnected, we
      * find all of its isolated vertices and add a "fake" transition to them.
@@ -294,10 +302,8 @@ public class Segmenter {
      * @return an array of syllables of the phrase
      */
     private String[] prepare(String phrase) {
-        // clear the last result
-        result.clear();
         // normalize the phrase
-        phrase = Segmenter.normalize(phrase);
+        phrase = normalize(phrase);
         // get syllables of the phrase
         final String[] syllables = phrase.split("\\s+");
         return syllables;
@@ -329,12 +335,72 @@ public class Segmenter {
     }
 
     /**
-     * Segment a phrase.
+     * Segment a phrase. The segmenter keeps no state between calls, so it
+     * can be used by several threads at the same time.
      * @see #normalize(String)
      * @param phrase
-     * @return a list of possible segmentations.
+     * @return a list of possible segmentations. The list normally contains
+     * less than 4 results.
      */
     public List<String[]> segment(final String phrase) {
+        return segment(phrase, null);
+    }
+
+    /**
+     * Segment a phrase with an additional lexicon, for example the words
+     * declared by an index. The overlay is consulted on top of the lexicons of
+     * the segmenter, which are not copied.
+     * @param phrase
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+     * @return a list of possible segmentations.
+     */
+    public List<String[]> segment(final String phrase, final AbstractLexiconRecognizer overlay) {
+        return segment(phrase, overlay, null);
+    }
+
+    /**
+     * Segment a phrase, recording the lattice, the shortest paths and the
+     * time spent in each step.
+     * @param phrase
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+     * @param explanation the explanation to fill, or <tt>null</tt>
+     * @return a list of possible segmentations.
+     */
+    public List<String[]> segment(final String phrase, final AbstractLexiconRecognizer overlay,
+            final SegmentationExplanation explanation) {
+        return segment(phrase, overlay, explanation, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Segment a phrase, enumerating at most <tt>maxSegmentations</tt> of its
+     * shortest paths. The number of shortest paths of a lattice can grow
+     * exponentially with the length of the phrase; when the limit is reached,
+     * the paths already found are returned.
+     * @param phrase
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+     * @param explanation the explanation to fill, or <tt>null</tt>
+     * @param maxSegmentations the maximum number of segmentations, at least 1
+     * @return a list of possible segmentations.
+     */
+    public List<String[]> segment(final String phrase, final AbstractLexiconRecognizer overlay,
+            final SegmentationExplanation explanation, final int maxSegmentations) {
+        return segment(phrase, overlay, explanation, maxSegmentations, null);
+    }
+
+    /**
+     * Segment a phrase, enumerating at most <tt>maxSegmentations</tt> of its
+     * shortest paths.
+     * @param phrase
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+     * @param explanation the explanation to fill, or <tt>null</tt>
+     * @param maxSegmentations the maximum number of segmentations, at least 1
+     * @param cappedListener called if the phrase has more than
+     *        <tt>maxSegmentations</tt> segmentations, or <tt>null</tt>
+     * @return a list of possible segmentations.
+     */
+    public List<String[]> segment(final String phrase, final AbstractLexiconRecognizer overlay,
+            final SegmentationExplanation explanation, final int maxSegmentations, final Runnable cappedListener) {
+        final long startTime = explanation != null ? System.nanoTime() : 0L;
         // save the original phrase before normalizing it
         // objective is not to change the original words of the phrase in the
         // result segmentations.
@@ -342,7 +408,7 @@ public class Segmenter {
         // get syllables of the phrase
         final String[] syllables = prepare(phrase);
         // create a weighted linear graph of the phrase
-        final IWeightedGraph graph = makeGraph(syllables);
+        final IWeightedGraph graph = makeGraph(syllables, getUserLexicon(), overlay);
         // get the end vertex of the linear graph
         final int nV = graph.getNumberOfVertices();
         // test the connectivity between the start vertex and the end vertex of
@@ -353,9 +419,14 @@ public class Segmenter {
             //			logger.log(Level.INFO, "The graph of this phrase is not connected. Try to connect it.");
             connect(graph);
         }
+        final long graphTime = explanation != null ? System.nanoTime() : 0L;
         // get all shortest paths from vertex 0 to the end vertex
         final ShortestPathFinder pathFinder = new ShortestPathFinder(graph);
-        final Node[] allShortestPaths = pathFinder.getAllShortestPaths(nV - 1);
+        final Node[] allShortestPaths = pathFinder.getAllShortestPaths(nV - 1, maxSegmentations);
+        if (pathFinder.isTruncated() && cappedListener != null) {
+            cappedListener.run();
+        }
+        final List<String[]> result = new ArrayList<>(allShortestPaths.length);
         // build segmentations corresponding to the shortest paths
         for (final Node path : allShortestPaths) {
             final int[] a = path.toArray();
@@ -363,9 +434,261 @@ public class Segmenter {
             final String[] segmentation = buildSegmentation(original, a);
             result.add(segmentation);
         }
+        if (explanation != null) {
+            final long endTime = System.nanoTime();
+            explanation.setSyllables(original);
+            for (int u = 0; u < nV; u++) {
+                final EdgeIterator edges = graph.edgeIterator(u);
+                while (edges.hasNext()) {
+                    final Edge edge = edges.next();
+                    explanation.addEdge(edge.getU(), edge.getV(), edge.getWeight());
+                }
+            }
+            explanation.setPaths(result, graphTime - startTime, endTime - graphTime);
+        }
         return result;
     }
 
+    /**
+     * Segment a phrase by forward maximum matching: from left to right, the
+     * longest word of the lexicons starting at the current syllable is taken,
+     * or the syllable alone if no word starts there. The lexicon automaton is
+     * walked syllable by syllable, no graph is built and no ambiguity is
+     * resolved, so the segmentation is much cheaper but less accurate than
+     * {@link #segment(String, AbstractLexiconRecognizer)}.
+     * @param phrase
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+     * @param explanation the explanation to fill, or <tt>null</tt>
+     * @return the segmentation.
+     */
+    public String[] segmentForward(final String phrase, final AbstractLexiconRecognizer overlay,
+            final SegmentationExplanation explanation) {
+        final long startTime = explanation != null ? System.nanoTime() : 0L;
+        final String[] original = phrase.split("\\p{Space}+");
+        final String[] syllables = prepare(phrase);
+        final int[][] ends = matchWords(syllables, getUserLexicon(), overlay);
+        final boolean[] forward = forwardBoundaries(ends);
+        final List<String> words = new ArrayList<>(syllables.length);
+        int start = 0;
+        for (int end = 1; end <= syllables.length; end++) {
+            if (forward[end]) {
+                words.add(join(original, start, end));
+                start = end;
+            }
+        }
+        return explain(original, words, explanation, startTime);
+    }
+
+    /**
+     * Segment a phrase by forward and backward maximum matching, and on its
+     * lattice only where they disagree. The boundaries found by both passes
+     * are kept; between two consecutive common boundaries, the span is a
+     * single word if neither pass cuts it, otherwise it is segmented as
+     * {@link #segment(String, AbstractLexiconRecognizer, SegmentationExplanation, int)}
+     * does, its ambiguities being resolved.
+     * @param phrase
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+     * @param explanation the explanation to fill, or <tt>null</tt>
+     * @param maxSegmentations the maximum number of segmentations of a span,
+     *        at least 1
+     * @param fallbackListener called with the number of syllables of each
+     *        span segmented on its lattice, or <tt>null</tt>
+     * @param cappedListener called once if a span has more than
+     *        <tt>maxSegmentations</tt> segmentations, or <tt>null</tt>
+     * @return the segmentation.
+     */
+    public String[] segmentHybrid(final String phrase, final AbstractLexiconRecognizer overlay,
+            final SegmentationExplanation explanation, final int maxSegmentations, final IntConsumer fallbackListener,
+            final Runnable cappedListener) {
+        final long startTime = explanation != null ? System.nanoTime() : 0L;
+        final String[] original = phrase.split("\\p{Space}+");
+        final String[] syllables = prepare(phrase);
+        final AbstractLexiconRecognizer userLexicon = getUserLexicon();
+        final int[][] ends = matchWords(syllables, userLexicon, overlay);
+        final boolean[] forward = forwardBoundaries(ends);
+        final boolean[] backward = backwardBoundaries(ends);
+        final List<String> words = new ArrayList<>(syllables.length);
+        int start = 0;
+        boolean agree = true;
+        final AtomicBoolean capped = new AtomicBoolean();
+        for (int end = 1; end <= syllables.length; end++) {
+            if (forward[end] && backward[end]) {
+                if (agree) {
+                    words.add(join(original, start, end));
+                } else {
+                    if (fallbackListener != null) {
+                        fallbackListener.accept(end - start);
+                    }
+                    final List<String[]> segmentations = segmentSpan(original, syllables, start, end, userLexicon, overlay,
+                            maxSegmentations, () -> capped.set(true));
+                    final String[] resolved = segmentations.size() > 1 && resolver != null ? resolver.resolve(segmentations)
+                            : segmentations.get(0);
+                    words.addAll(Arrays.asList(resolved));
+                }
+                start = end;
+                agree = true;
+            } else if (forward[end] || backward[end]) {
+                agree = false;
+            }
+        }
+        if (capped.get() && cappedListener != null) {
+            cappedListener.run();
+        }
+        return explain(original, words, explanation, startTime);
+    }
+
+    /**
+     * Find the words of the lexicons in a phrase. The lexicon automaton is
+     * walked syllable by syllable from each syllable while it accepts a
+     * prefix; the words of the other lexicons are looked up as strings, only
+     * up to the longest of them.
+     * @param syllables the normalized syllables of the phrase
+     * @param userLexicon the user lexicon recognizer, or <tt>null</tt>
+     * @param overlay the overlay lexicon recognizer, or <tt>null</tt>
+     * @return for each syllable, the increasing ends of the words starting
+     * there.
+     */
+    private int[][] matchWords(final String[] syllables, final AbstractLexiconRecognizer userLexicon,
+            final AbstractLexiconRecognizer overlay) {
+        int maxSyllables = externalLexiconRecognizer.getMaxSyllables();
+        if (userLexicon != null) {
+            maxSyllables = Math.max(maxSyllables, userLexicon.getMaxSyllables());
+        }
+        if (overlay != null) {
+            maxSyllables = Math.max(maxSyllables, overlay.getMaxSyllables());
+        }
+        final CompactDFA dfa = lexiconRecognizer.getLexiconDFA();
+        final int n = syllables.length;
+        final int[][] ends = new int[n][];
+        final int[] buffer = new int[n];
+        final StringBuilder word = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            int count = 0;
+            int state = dfa.getInitialState();
+            word.setLength(0);
+            for (int j = i; j < n; j++) {
+                boolean accepted = false;
+                if (state != CompactDFA.NO_STATE) {
+                    if (j > i) {
+                        state = dfa.next(state, org.codelibs.elasticsearch.vi.nlp.fsm.IConstants.BLANK_CHARACTER);
+                    }
+                    state = dfa.next(state, syllables[j], 0, syllables[j].length());
+                    accepted = state != CompactDFA.NO_STATE && dfa.isFinalState(state);
+                }
+                if (j - i < maxSyllables) {
+                    if (j > i) {
+                        word.append(org.codelibs.elasticsearch.vi.nlp.fsm.IConstants.BLANK_CHARACTER);
+                    }
+                    word.append(syllables[j]);
+                    if (!accepted) {
+                        final String w = word.toString();
+                        accepted = externalLexiconRecognizer.accept(w) || (userLexicon != null && userLexicon.accept(w))
+                                || (overlay != null && overlay.accept(w));
+                    }
+                } else if (state == CompactDFA.NO_STATE) {
+                    break;
+                }
+                if (accepted) {
+                    buffer[count++] = j + 1;
+                }
+            }
+            ends[i] = Arrays.copyOf(buffer, count);
+        }
+        return ends;
+    }
+
+    /**
+     * @param ends the ends of the words starting at each syllable
+     * @return the word boundaries of the forward maximum matching, a syllable
+     * which starts no word being a word.
+     */
+    private static boolean[] forwardBoundaries(final int[][] ends) {
+        final int n = ends.length;
+        final boolean[] boundaries = new boolean[n + 1];
+        boundaries[0] = true;
+        int i = 0;
+        while (i < n) {
+            i = ends[i].length > 0 ? ends[i][ends[i].length - 1] : i + 1;
+            boundaries[i] = true;
+        }
+        return boundaries;
+    }
+
+    /**
+     * @param ends the ends of the words starting at each syllable
+     * @return the word boundaries of the backward maximum matching, a
+     * syllable which ends no word being a word.
+     */
+    private static boolean[] backwardBoundaries(final int[][] ends) {
+        final int n = ends.length;
+        // the first syllable of the longest word ending at each position
+        final int[] starts = new int[n + 1];
+        Arrays.fill(starts, -1);
+        for (int i = 0; i < n; i++) {
+            for (final int end : ends[i]) {
+                if (starts[end] < 0) {
+                    starts[end] = i;
+                }
+            }
+        }
+        final boolean[] boundaries = new boolean[n + 1];
+        boundaries[n] = true;
+        int j = n;
+        while (j > 0) {
+            j = starts[j] >= 0 ? starts[j] : j - 1;
+            boundaries[j] = true;
+        }
+        return boundaries;
+    }
+
+    /**
+     * Segment the syllables <tt>[start, end)</tt> of a phrase on their
+     * lattice, enumerating at most <tt>maxSegmentations</tt> of its shortest
+     * paths.
+     * @param cappedListener called if the span has more than
+     *        <tt>maxSegmentations</tt> segmentations
+     * @return the segmentations given by the shortest paths.
+     */
+    private List<String[]> segmentSpan(final String[] original, final String[] syllables, final int start, final int end,
+            final AbstractLexiconRecognizer userLexicon, final AbstractLexiconRecognizer overlay, final int maxSegmentations,
+            final Runnable cappedListener) {
+        final IWeightedGraph graph = makeGraph(Arrays.copyOfRange(syllables, start, end), userLexicon, overlay);
+        final int nV = graph.getNumberOfVertices();
+        if (!GraphConnectivity.isConnected(graph, 0, nV - 1)) {
+            connect(graph);
+        }
+        final ShortestPathFinder pathFinder = new ShortestPathFinder(graph);
+        final Node[] allShortestPaths = pathFinder.getAllShortestPaths(nV - 1, maxSegmentations);
+        if (pathFinder.isTruncated()) {
+            cappedListener.run();
+        }
+        final String[] spanSyllables = Arrays.copyOfRange(original, start, end);
+        final List<String[]> result = new ArrayList<>(allShortestPaths.length);
+        for (final Node path : allShortestPaths) {
+            result.add(buildSegmentation(spanSyllables, path.toArray()));
+        }
+        return result;
+    }
+
+    private static String join(final String[] syllables, final int start, final int end) {
+        return String.join(String.valueOf(org.codelibs.elasticsearch.vi.nlp.fsm.IConstants.BLANK_CHARACTER),
+                Arrays.asList(syllables).subList(start, end));
+    }
+
+    /**
+     * Record a segmentation found without enumerating the shortest paths.
+     * @return the segmentation.
+     */
+    private static String[] explain(final String[] original, final List<String> words, final SegmentationExplanation explanation,
+            final long startTime) {
+        final String[] segmentation = words.toArray(new String[words.size()]);
+        if (explanation != null) {
+            explanation.setSyllables(original);
+            explanation.setPaths(Collections.singletonList(segmentation), 0L, System.nanoTime() - startTime);
+        }
+        return segmentation;
+    }
+
     /**
      * @param segmentations a list of possible segmentations.
      * @return the most probable segmentation
@@ -374,11 +697,40 @@ public class Segmenter {
         return resolver.resolve(segmentations);
     }
 
+    /**
+     * Resolve the ambiguities, recording the score of each segmentation.
+     * @param segmentations a list of possible segmentations.
+     * @param explanation the explanation to fill, or <tt>null</tt>
+     * @return the most probable segmentation
+     */
+    public String[] resolveAmbiguity(final List<String[]> segmentations, final SegmentationExplanation explanation) {
+        if (explanation == null) {
+            return resolveAmbiguity(segmentations);
+        }
+        final long startTime = System.nanoTime();
+        final String[] resolved = resolver.resolve(segmentations);
+        final long resolutionNanos = System.nanoTime() - startTime;
+        final long[] scores = new long[segmentations.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = resolver.score(segmentations.get(i));
+        }
+        explanation.setScores(scores, resolved, resolutionNanos);
+        return resolved;
+    }
+
+    /**
+     * @return the estimated size of the lexicons and models of the segmenter
+     * in bytes, the user lexicon excepted.
+     */
+    public long ramBytesUsed() {
+        return lexiconRecognizer.ramBytesUsed() + externalLexiconRecognizer.ramBytesUsed() + normalizer.ramBytesUsed()
+                + (resolver != null ? resolver.ramBytesUsed() : 0);
+    }
+
     /**
      * Dispose the segmenter to save space.
      */
     public void dispose() {
-        result.clear();
         lexiconRecognizer.dispose();
         externalLexiconRecognizer.dispose();
     }
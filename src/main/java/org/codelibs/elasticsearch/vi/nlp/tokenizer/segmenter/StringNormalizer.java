@@ -14,6 +14,7 @@ import java.util.Properties;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.codelibs.elasticsearch.vi.nlp.utils.RamUsage;
 
 /**
  * @author Le Hong Phuong, phuonglh@gmail.com
@@ -30,10 +31,12 @@ public final class StringNormalizer {
 
     private static final Logger logger = LogManager.getLogger(StringNormalizer.class);
 
-    private static Map<String, String> map;
+    /**
+     * The normalization rules, not modified once loaded.
+     */
+    private final Map<String, String> map = new HashMap<>();
 
     private StringNormalizer(final String mapFile) {
-        map = new HashMap<>();
         init(mapFile);
     }
 
@@ -77,17 +80,24 @@ public final class StringNormalizer {
         return new StringNormalizer(properties.getProperty("normalizationRules"));
     }
 
+    /**
+     * @return the estimated size of the rules in bytes.
+     */
+    public long ramBytesUsed() {
+        return RamUsage.sizeOf(map, -1);
+    }
+
     /**
      * Normalize a string.
      * @return a normalized string
      * @param s a string
      */
     public String normalize(final String s) {
-        String result = new String(s);
-        for (final String from : map.keySet()) {
-            final String to = map.get(from);
+        String result = s;
+        for (final Map.Entry<String, String> entry : map.entrySet()) {
+            final String from = entry.getKey();
             if (result.indexOf(from) >= 0) {
-                result = result.replace(from, to);
+                result = result.replace(from, entry.getValue());
             }
         }
         return result;
@@ -13,6 +13,7 @@ import org.apache.logging.log4j.Logger;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.LexiconUnmarshaller;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.jaxb.Corpus;
 import org.codelibs.elasticsearch.vi.nlp.lexicon.jaxb.W;
+import org.codelibs.elasticsearch.vi.nlp.utils.RamUsage;
 
 /**
  * @author Le Hong Phuong, phuonglh@gmail.com
@@ -29,31 +30,20 @@ public class UnigramResolver extends AbstractResolver {
     private static final Logger logger = LogManager.getLogger(UnigramResolver.class);
 
     /**
-     * A lexicon unmarshaller to unmarshal the unigram model.
+     * The unigram probabilities. The map is not modified once loaded,
+     * so the resolver can be shared by threads.
      */
-    private LexiconUnmarshaller unmarshaller;
-    /**
-     * The unigram probabilities.
-     */
-    private Map<String, Integer> unigram;
+    private final Map<String, Integer> unigram = new HashMap<>();
 
     /**
      * Default construtor.
      * @param unigramFilename the unigram filename.
      */
     public UnigramResolver(final String unigramFilename) {
-        init();
         // load the unigram model.
         loadUnigram(unigramFilename);
     }
 
-    private void init() {
-        // create a lexicon unmarshaller
-        unmarshaller = new LexiconUnmarshaller();
-        // init the unigram model
-        unigram = new HashMap<>();
-    }
-
     /**
      * Load unigram model and calculate frequencies.
      * @param unigramFilename the unigram filename
@@ -61,7 +51,7 @@ public class UnigramResolver extends AbstractResolver {
     private void loadUnigram(final String unigramFilename) {
         logger.info("Loading unigram model...");
         // load unigram model
-        final Corpus unigramCorpus = unmarshaller.unmarshal(unigramFilename);
+        final Corpus unigramCorpus = new LexiconUnmarshaller().unmarshal(unigramFilename);
         final List<W> ws = unigramCorpus.getBody().getW();
         for (final W w : ws) {
             final String freq = w.getMsd();
@@ -71,6 +61,11 @@ public class UnigramResolver extends AbstractResolver {
         logger.info("OK");
     }
 
+    @Override
+    public long ramBytesUsed() {
+        return RamUsage.sizeOf(unigram, RamUsage.INTEGER_SIZE);
+    }
+
     /**
      * Unigram resolver for segmentations. Given a list of segmentations,
      * this method calculates the probabilites of segmentations and
@@ -86,14 +81,7 @@ public class UnigramResolver extends AbstractResolver {
         String[] choice = null;
         int maxFrequency = 0;
         for (final String[] segmentation : segmentations) {
-            int frequency = 0;
-            for (final String word : segmentation) {
-                int wordFreq = 0;
-                if (unigram.containsKey(word)) {
-                    wordFreq = unigram.get(word).intValue();
-                }
-                frequency += wordFreq;
-            }
+            final int frequency = frequency(segmentation);
             if (frequency >= maxFrequency) {
                 maxFrequency = frequency;
                 choice = segmentation;
@@ -102,4 +90,23 @@ public class UnigramResolver extends AbstractResolver {
         return choice;
     }
 
+    /**
+     * @return the sum of the frequencies of the words of the segmentation.
+     */
+    @Override
+    public long score(final String[] segmentation) {
+        return frequency(segmentation);
+    }
+
+    private int frequency(final String[] segmentation) {
+        int frequency = 0;
+        for (final String word : segmentation) {
+            final Integer wordFreq = unigram.get(word);
+            if (wordFreq != null) {
+                frequency += wordFreq.intValue();
+            }
+        }
+        return frequency;
+    }
+
 }
@@ -1,7 +1,10 @@
 package org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens;
 
+import java.util.Locale;
 import java.util.regex.Pattern;
 
+import org.codelibs.elasticsearch.vi.nlp.utils.RamUsage;
+
 /**
  * @author Le Hong Phuong, phuonglh@gmail.com
  *         <p>
@@ -18,9 +21,20 @@ public class LexerRule {
      */
     private final String regex;
     /**
-     * A pre-compiled pattern object, kept to save processing time
+     * A pre-compiled pattern object, compiled once so that the rule can be
+     * shared by threads
+     */
+    private final Pattern pattern;
+
+    /**
+     * The token type of the category, for example <tt>&lt;PHRASE&gt;</tt>
+     */
+    private final String type;
+
+    /**
+     * Does the category contain only punctuation or special characters?
      */
-    private Pattern pattern;
+    private final boolean punctuation;
 
     /**
      * Instantiate a new lexical rule with a name
@@ -29,8 +43,7 @@ public class LexerRule {
      *            a name
      */
     public LexerRule(final String name) {
-        this.name = name;
-        this.regex = "";
+        this(name, "");
     }
 
     /**
@@ -44,6 +57,9 @@ public class LexerRule {
     public LexerRule(final String name, final String regex) {
         this.name = name;
         this.regex = regex;
+        this.pattern = Pattern.compile(regex);
+        this.type = "<" + name.toUpperCase(Locale.ROOT) + ">";
+        this.punctuation = "punctuation".equalsIgnoreCase(name) || "special".equalsIgnoreCase(name);
     }
 
     /**
@@ -65,17 +81,44 @@ public class LexerRule {
     }
 
     /**
-     * Return the pattern object. Create one if it hasn't been created already.
+     * Get the token type of the category, that is the upper case name
+     * enclosed in angle brackets
+     *
+     * @return the token type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Test if this rule matches punctuation or special characters, which are
+     * not words
+     *
+     * @return true/false
+     */
+    public boolean isPunctuation() {
+        return punctuation;
+    }
+
+    /**
+     * Return the pre-compiled pattern object.
      *
      * @return the pattern object
      */
     public Pattern getPattern() {
-        if (pattern == null) {
-            pattern = Pattern.compile(regex);
-        }
         return pattern;
     }
 
+    /**
+     * Return a rough estimate of the size of the rule in bytes, a compiled
+     * pattern holding about one node per character of its regex
+     *
+     * @return the estimated size
+     */
+    public long ramBytesUsed() {
+        return RamUsage.sizeOf(name) + RamUsage.sizeOf(regex) + RamUsage.sizeOf(type) + 64L * regex.length();
+    }
+
     /**
      * Return a string representation of the rule
      */
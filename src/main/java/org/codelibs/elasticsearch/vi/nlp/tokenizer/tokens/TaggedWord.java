@@ -12,7 +12,7 @@ public class TaggedWord implements Comparable<TaggedWord> {
      */
     private final LexerRule rule;
     /**
-     * The text
+     * The text, without leading and trailing blanks
      */
     private final String text;
 
@@ -26,6 +26,27 @@ public class TaggedWord implements Comparable<TaggedWord> {
      */
     private int column;
 
+    /**
+     * The offset of the first character of the text in the input
+     */
+    private int startOffset = -1;
+
+    /**
+     * The offset after the last character of the text in the input
+     */
+    private int endOffset = -1;
+
+    /**
+     * The number of positions from the previous word, <tt>0</tt> for an
+     * alternative of a word starting at the same position
+     */
+    private int positionIncrement = 1;
+
+    /**
+     * The number of positions spanned by the word
+     */
+    private int positionLength = 1;
+
     /**
      * Create a LexerToken
      *
@@ -40,11 +61,34 @@ public class TaggedWord implements Comparable<TaggedWord> {
      */
     public TaggedWord(final LexerRule rule, final String text, final int line, final int column) {
         this.rule = rule;
-        this.text = text;
+        this.text = text.trim();
         this.line = line;
         this.column = column;
     }
 
+    /**
+     * Create a LexerToken with its offsets in the input
+     *
+     * @param rule
+     *            a rule
+     * @param text
+     *            the text
+     * @param line
+     *            the line location of the text in a file
+     * @param column
+     *            the column location of the text in a file
+     * @param startOffset
+     *            the offset of the first character of the text in the input
+     * @param endOffset
+     *            the offset after the last character of the text in the input
+     */
+    public TaggedWord(final LexerRule rule, final String text, final int line, final int column, final int startOffset,
+            final int endOffset) {
+        this(rule, text, line, column);
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
     /**
      * Create a lexer token from a text
      *
@@ -53,7 +97,7 @@ public class TaggedWord implements Comparable<TaggedWord> {
      */
     public TaggedWord(final String text) {
         this.rule = null;
-        this.text = text;
+        this.text = text.trim();
         this.line = -1;
         this.column = -1;
     }
@@ -65,7 +109,7 @@ public class TaggedWord implements Comparable<TaggedWord> {
      */
     public TaggedWord(final LexerRule rule, final String text) {
         this.rule = rule;
-        this.text = text;
+        this.text = text.trim();
         this.line = -1;
         this.column = -1;
     }
@@ -85,7 +129,7 @@ public class TaggedWord implements Comparable<TaggedWord> {
      * @return the text matched by this token
      */
     public String getText() {
-        return text.trim();
+        return text;
     }
 
     /**
@@ -166,6 +210,68 @@ public class TaggedWord implements Comparable<TaggedWord> {
         this.line = line;
     }
 
+    /**
+     * @return Returns the offset of the first character of the text in the
+     *         input, or -1 if it is unknown.
+     */
+    public int getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * @param startOffset
+     *            The start offset to set.
+     */
+    public void setStartOffset(final int startOffset) {
+        this.startOffset = startOffset;
+    }
+
+    /**
+     * @return Returns the offset after the last character of the text in the
+     *         input, or -1 if it is unknown.
+     */
+    public int getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * @param endOffset
+     *            The end offset to set.
+     */
+    public void setEndOffset(final int endOffset) {
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * @return the number of positions from the previous word.
+     */
+    public int getPositionIncrement() {
+        return positionIncrement;
+    }
+
+    /**
+     * @param positionIncrement
+     *            The number of positions from the previous word.
+     */
+    public void setPositionIncrement(final int positionIncrement) {
+        this.positionIncrement = positionIncrement;
+    }
+
+    /**
+     * @return the number of positions spanned by the word.
+     */
+    public int getPositionLength() {
+        return positionLength;
+    }
+
+    /**
+     * @param positionLength
+     *            The number of positions spanned by the word.
+     */
+    public void setPositionLength(final int positionLength) {
+        this.positionLength = positionLength;
+    }
+
     /**
      * Return a string representation of the token
      */
@@ -173,7 +279,7 @@ public class TaggedWord implements Comparable<TaggedWord> {
     public String toString() {
         // return "[\"" + text + "\"" + " at (" + line + "," + column + ")]";
         // return rule.getName() + ": " + text;
-        return text.trim();
+        return text;
     }
 
     /* (non-Javadoc)
@@ -107,6 +107,19 @@ public class CaseConverter {
         return lower.charValue();
     }
 
+    /**
+     * @return all the Vietnamese lowercase and uppercase characters
+     */
+    public static char[] getCharacters() {
+        final char[] characters = new char[lower2UpperMap.size() * 2];
+        int i = 0;
+        for (final Map.Entry<Character, Character> entry : lower2UpperMap.entrySet()) {
+            characters[i++] = entry.getKey().charValue();
+            characters[i++] = entry.getValue().charValue();
+        }
+        return characters;
+    }
+
     /**
      * Convert a string to lower case
      *
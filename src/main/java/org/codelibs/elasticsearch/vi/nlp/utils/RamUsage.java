@@ -0,0 +1,71 @@
+package org.codelibs.elasticsearch.vi.nlp.utils;
+
+import static org.apache.lucene.util.RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+import static org.apache.lucene.util.RamUsageEstimator.NUM_BYTES_OBJECT_HEADER;
+import static org.apache.lucene.util.RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+import static org.apache.lucene.util.RamUsageEstimator.alignObjectSize;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Rough estimates of the heap retained by the models, used to account them
+ * to the circuit breakers. The estimates assume a Java 8 layout of strings and
+ * hash maps; they are meant to be close, not exact.
+ */
+public final class RamUsage {
+
+    /**
+     * A string without its characters: a reference to the array and the hash.
+     */
+    private static final long STRING_SHALLOW_SIZE = alignObjectSize(NUM_BYTES_OBJECT_HEADER + NUM_BYTES_OBJECT_REF + Integer.BYTES);
+
+    /**
+     * A node of a hash map: the hash, the key, the value and the next node,
+     * plus its slot in a table loaded at 75%.
+     */
+    private static final long HASH_NODE_SIZE =
+            alignObjectSize(NUM_BYTES_OBJECT_HEADER + Integer.BYTES + 3 * NUM_BYTES_OBJECT_REF) + NUM_BYTES_OBJECT_REF * 4 / 3;
+
+    /**
+     * A boxed integer.
+     */
+    public static final long INTEGER_SIZE = alignObjectSize(NUM_BYTES_OBJECT_HEADER + Integer.BYTES);
+
+    private RamUsage() {
+    }
+
+    /**
+     * @param s a string
+     * @return the size of the string and of its characters.
+     */
+    public static long sizeOf(final String s) {
+        return STRING_SHALLOW_SIZE + alignObjectSize(NUM_BYTES_ARRAY_HEADER + (long) s.length() * Character.BYTES);
+    }
+
+    /**
+     * @param strings a hash set of strings
+     * @return the size of the set and of its strings.
+     */
+    public static long sizeOf(final Collection<String> strings) {
+        long size = 0;
+        for (final String s : strings) {
+            size += HASH_NODE_SIZE + sizeOf(s);
+        }
+        return size;
+    }
+
+    /**
+     * @param map a hash map of strings
+     * @param valueSize the size of a value which is not a string, or <tt>-1</tt>
+     * @return the size of the map, of its keys and of its values.
+     */
+    public static long sizeOf(final Map<String, ?> map, final long valueSize) {
+        long size = 0;
+        for (final Map.Entry<String, ?> entry : map.entrySet()) {
+            size += HASH_NODE_SIZE + sizeOf(entry.getKey());
+            size += valueSize >= 0 ? valueSize : sizeOf((String) entry.getValue());
+        }
+        return size;
+    }
+}
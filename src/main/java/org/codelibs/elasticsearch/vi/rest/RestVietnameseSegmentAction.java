@@ -0,0 +1,147 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package org.codelibs.elasticsearch.vi.rest;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+import java.io.IOException;
+
+import org.codelibs.elasticsearch.vi.action.VietnameseSegmentAction;
+import org.codelibs.elasticsearch.vi.action.VietnameseSegmentRequest;
+import org.codelibs.elasticsearch.vi.action.VietnameseSegmentResponse;
+import org.codelibs.elasticsearch.vi.analysis.SegmentationMode;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.rest.action.RestBuilderListener;
+
+/**
+ * <tt>GET|POST /_vi/segment</tt>: segments a batch of texts into words.
+ * <p>
+ * The body is either an object <tt>{"texts": [...], "mode": "..."}</tt>, or,
+ * with the <tt>application/x-ndjson</tt> content type, one text per line,
+ * each being a JSON string or an object <tt>{"text": "..."}</tt>. The
+ * <tt>mode</tt> parameter overrides the mode of the body.
+ */
+public class RestVietnameseSegmentAction extends BaseRestHandler {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    public RestVietnameseSegmentAction(final Settings settings, final RestController controller) {
+        super(settings);
+        controller.registerHandler(GET, "/_vi/segment", this);
+        controller.registerHandler(POST, "/_vi/segment", this);
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
+        final VietnameseSegmentRequest segmentRequest = new VietnameseSegmentRequest();
+        final String contentType = request.header("Content-Type");
+        if (contentType != null && contentType.startsWith(NDJSON)) {
+            parseLines(request.requiredContent().utf8ToString(), segmentRequest);
+        } else {
+            request.applyContentParser(parser -> parseBody(parser, segmentRequest));
+        }
+        final String mode = request.param("mode");
+        if (mode != null) {
+            segmentRequest.mode(SegmentationMode.parse(mode));
+        }
+        return channel -> client.execute(VietnameseSegmentAction.INSTANCE, segmentRequest,
+                new RestBuilderListener<VietnameseSegmentResponse>(channel) {
+                    @Override
+                    public RestResponse buildResponse(final VietnameseSegmentResponse response, final XContentBuilder builder)
+                            throws Exception {
+                        builder.startObject();
+                        response.toXContent(builder, request);
+                        builder.endObject();
+                        return new BytesRestResponse(RestStatus.OK, builder);
+                    }
+                });
+    }
+
+    @Override
+    public boolean supportsContentStream() {
+        return true;
+    }
+
+    private static void parseBody(final XContentParser parser, final VietnameseSegmentRequest segmentRequest) throws IOException {
+        if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+            throw new IllegalArgumentException("Malformed request body, expected an object");
+        }
+        String fieldName = null;
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                fieldName = parser.currentName();
+            } else if ("texts".equals(fieldName) && token == XContentParser.Token.START_ARRAY) {
+                while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+                    segmentRequest.addText(parseText(parser, token));
+                }
+            } else if ("text".equals(fieldName) && token == XContentParser.Token.VALUE_STRING) {
+                segmentRequest.addText(parser.text());
+            } else if ("mode".equals(fieldName) && token == XContentParser.Token.VALUE_STRING) {
+                segmentRequest.mode(SegmentationMode.parse(parser.text()));
+            } else {
+                throw new IllegalArgumentException("Unknown parameter [" + fieldName + "] in request body or parameter is of the wrong type ["
+                        + token + "]");
+            }
+        }
+    }
+
+    private static void parseLines(final String content, final VietnameseSegmentRequest segmentRequest) throws IOException {
+        int start = 0;
+        while (start < content.length()) {
+            int end = content.indexOf('\n', start);
+            if (end < 0) {
+                end = content.length();
+            }
+            final String line = content.substring(start, end).trim();
+            if (line.length() > 0) {
+                try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, line)) {
+                    segmentRequest.addText(parseText(parser, parser.nextToken()));
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @return the text of a JSON string or of an object <tt>{"text": "..."}</tt>.
+     */
+    private static String parseText(final XContentParser parser, final XContentParser.Token token) throws IOException {
+        if (token == XContentParser.Token.VALUE_STRING) {
+            return parser.text();
+        }
+        if (token == XContentParser.Token.START_OBJECT && parser.nextToken() == XContentParser.Token.FIELD_NAME
+                && "text".equals(parser.currentName()) && parser.nextToken() == XContentParser.Token.VALUE_STRING) {
+            final String text = parser.text();
+            if (parser.nextToken() == XContentParser.Token.END_OBJECT) {
+                return text;
+            }
+        }
+        throw new IllegalArgumentException("Malformed text, expected a string or an object with a [text] field");
+    }
+}
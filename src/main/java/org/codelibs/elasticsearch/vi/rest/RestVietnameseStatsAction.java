@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.codelibs.elasticsearch.vi.rest;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+import java.io.IOException;
+
+import org.codelibs.elasticsearch.vi.action.VietnameseStatsAction;
+import org.codelibs.elasticsearch.vi.action.VietnameseStatsRequest;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions.NodesResponseRestListener;
+
+/**
+ * <tt>GET /_vi/stats</tt> and <tt>GET /_vi/stats/{nodeId}</tt>: the
+ * tokenization statistics of the nodes.
+ */
+public class RestVietnameseStatsAction extends BaseRestHandler {
+
+    public RestVietnameseStatsAction(final Settings settings, final RestController controller) {
+        super(settings);
+        controller.registerHandler(GET, "/_vi/stats", this);
+        controller.registerHandler(GET, "/_vi/stats/{nodeId}", this);
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
+        final String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        final VietnameseStatsRequest statsRequest = new VietnameseStatsRequest(nodesIds);
+        statsRequest.timeout(request.param("timeout"));
+        return channel -> client.execute(VietnameseStatsAction.INSTANCE, statsRequest, new NodesResponseRestListener<>(channel));
+    }
+}
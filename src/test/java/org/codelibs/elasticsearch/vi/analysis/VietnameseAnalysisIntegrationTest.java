@@ -1,19 +1,32 @@
 package org.codelibs.elasticsearch.vi.analysis;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import org.codelibs.elasticsearch.vi.AnalysisVietnamesePlugin;
+import org.codelibs.elasticsearch.vi.action.VietnameseNodeStats;
+import org.codelibs.elasticsearch.vi.action.VietnameseSegmentAction;
+import org.codelibs.elasticsearch.vi.action.VietnameseSegmentResponse;
+import org.codelibs.elasticsearch.vi.action.VietnameseStatsAction;
+import org.codelibs.elasticsearch.vi.action.VietnameseStatsResponse;
+import org.elasticsearch.action.ActionRequestValidationException;
 import org.elasticsearch.action.admin.cluster.node.info.NodeInfo;
 import org.elasticsearch.action.admin.cluster.node.info.NodesInfoResponse;
+import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
 import org.elasticsearch.action.admin.indices.analyze.AnalyzeResponse;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.plugins.Plugin;
@@ -29,6 +42,11 @@ public class VietnameseAnalysisIntegrationTest extends ESIntegTestCase {
         return Collections.singleton(AnalysisVietnamesePlugin.class);
     }
 
+    @Override
+    protected Collection<Class<? extends Plugin>> transportClientPlugins() {
+        return Collections.singleton(AnalysisVietnamesePlugin.class);
+    }
+
     public void testPluginIsLoaded() throws Exception {
         final NodesInfoResponse response = client().admin().cluster().prepareNodesInfo().setPlugins(true).get();
         for (final NodeInfo nodeInfo : response.getNodes()) {
@@ -55,6 +73,114 @@ public class VietnameseAnalysisIntegrationTest extends ESIntegTestCase {
         }
     }
 
+    public void testCircuitBreakerAccounting() {
+        createIndex("test");
+        ensureGreen("test");
+        final NodesStatsResponse response = client().admin().cluster().prepareNodesStats().setBreaker(true).get();
+        long estimated = 0;
+        for (final NodeStats nodeStats : response.getNodes()) {
+            estimated += nodeStats.getBreaker().getStats(VietnameseBreakerService.BREAKER_NAME).getEstimated();
+        }
+        assertThat(estimated, greaterThan(0L));
+    }
+
+    public void testPreload() throws Exception {
+        // the nodes load the model when they start, before any index uses it
+        assertBusy(() -> {
+            final VietnameseStatsResponse response = VietnameseStatsAction.INSTANCE.newRequestBuilder(client()).get();
+            for (final VietnameseNodeStats nodeStats : response.getNodes()) {
+                assertThat(nodeStats.getModelCount(), is(1L));
+            }
+        });
+    }
+
+    public void testStats() {
+        createIndex("test");
+        ensureGreen("test");
+        client().admin().indices().prepareAnalyze("công nghệ thông tin Việt Nam").setIndex("test").setAnalyzer("vi_analyzer").get();
+        final VietnameseStatsResponse response = VietnameseStatsAction.INSTANCE.newRequestBuilder(client()).get();
+        assertThat(response.failures().isEmpty(), is(true));
+        long models = 0;
+        long documents = 0;
+        long tokens = 0;
+        long phrases = 0;
+        for (final VietnameseNodeStats nodeStats : response.getNodes()) {
+            models += nodeStats.getModelCount();
+            documents += nodeStats.getDocuments();
+            tokens += nodeStats.getTokens();
+            phrases += nodeStats.getPhrases();
+        }
+        assertThat(models, greaterThan(0L));
+        assertThat(documents, greaterThan(0L));
+        assertThat(tokens, greaterThan(0L));
+        assertThat(phrases, greaterThan(0L));
+    }
+
+    public void testLexerStats() {
+        createIndex("test");
+        ensureGreen("test");
+        client().admin().cluster().prepareUpdateSettings()
+                .setTransientSettings(Settings.builder().put(VietnameseModelRegistry.LEXER_STATS_SETTING.getKey(), true)).get();
+        try {
+            client().admin().indices().prepareAnalyze("công nghệ thông tin Việt Nam, 12/10/2017").setIndex("test")
+                    .setAnalyzer("vi_analyzer").get();
+            long phraseWins = 0;
+            for (final VietnameseNodeStats nodeStats : VietnameseStatsAction.INSTANCE.newRequestBuilder(client()).get().getNodes()) {
+                final String[] rules = nodeStats.getLexerRules();
+                for (int i = 0; i < rules.length; i++) {
+                    if ("phrase".equals(rules[i])) {
+                        phraseWins += nodeStats.getLexerWins()[i];
+                    }
+                }
+            }
+            assertThat(phraseWins, greaterThan(0L));
+        } finally {
+            client().admin().cluster().prepareUpdateSettings()
+                    .setTransientSettings(Settings.builder().putNull(VietnameseModelRegistry.LEXER_STATS_SETTING.getKey())).get();
+        }
+        for (final VietnameseNodeStats nodeStats : VietnameseStatsAction.INSTANCE.newRequestBuilder(client()).get().getNodes()) {
+            assertThat(nodeStats.getLexerRules().length, is(0));
+        }
+    }
+
+    public void testSegment() {
+        final String[] texts = new String[25];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = i + ". công nghệ thông tin Việt Nam";
+        }
+        final VietnameseSegmentResponse response = VietnameseSegmentAction.INSTANCE.newRequestBuilder(client()).addTexts(texts)
+                .setMode(SegmentationMode.FAST).get();
+        assertThat(response.getTokens().length, is(texts.length));
+        for (int i = 0; i < texts.length; i++) {
+            final Token[] tokens = response.getTokens()[i];
+            final int offset = texts[i].indexOf('c');
+            assertThat(tokens.length, is(4));
+            assertThat(tokens[1].getText(), is("công nghệ thông tin"));
+            assertThat(tokens[1].getStartOffset(), is(offset));
+            assertThat(tokens[1].getEndOffset(), is(offset + 19));
+            assertThat(tokens[1].getPos(), is(1));
+            assertThat(tokens[3].getText(), is("Nam"));
+            assertThat(tokens[3].getPos(), is(3));
+        }
+
+        expectThrows(ActionRequestValidationException.class, () -> VietnameseSegmentAction.INSTANCE.newRequestBuilder(client()).get());
+    }
+
+    public void testExplain() {
+        final Map<String, Object> tokenizer = new HashMap<>();
+        tokenizer.put("type", "vi_tokenizer");
+        tokenizer.put("explain", true);
+        final AnalyzeResponse response = client().admin().indices().prepareAnalyze("công nghệ thông tin Việt Nam")
+                .setTokenizer(tokenizer).setExplain(true).setAttributes("segmentation").get();
+        final AnalyzeResponse.AnalyzeToken token = response.detail().tokenizer().getTokens()[0];
+        assertThat(token.getTerm(), is("công nghệ thông tin"));
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> segmentation = (Map<String, Object>) token.getAttributes().get("segmentation");
+        assertThat(segmentation, notNullValue());
+        assertThat(segmentation.get("phrase"), is("công nghệ thông tin Việt Nam"));
+        assertThat(((List<?>) segmentation.get("paths")).size(), greaterThan(0));
+    }
+
     public void testVietnameseAnalyzerInMapping() throws ExecutionException, InterruptedException, IOException {
         createIndex("test");
         ensureGreen("test");
@@ -1,28 +1,69 @@
 package org.codelibs.elasticsearch.vi.analysis;
 
 import static org.apache.lucene.analysis.BaseTokenStreamTestCase.assertTokenStreamContents;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.codelibs.elasticsearch.vi.AnalysisVietnamesePlugin;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.Lexer;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.LexerStats;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.SegmentationExplanation;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.Segmenter;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.segmenter.UnigramResolver;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.LexerRule;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.tokens.TaggedWord;
 import org.codelibs.elasticsearch.vi.analysis.VietnameseAnalyzer;
 import org.codelibs.elasticsearch.vi.analysis.VietnameseTokenizer;
 import org.codelibs.elasticsearch.vi.analysis.VietnameseTokenizerFactory;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.CustomAnalyzer;
 import org.elasticsearch.index.analysis.NamedAnalyzer;
 import org.elasticsearch.index.analysis.TokenizerFactory;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.IndexSettingsModule;
+import org.elasticsearch.test.MockLogAppender;
 
 /**
  * Created by duydo on 2/19/17.
@@ -61,6 +102,595 @@ public class VietnameseAnalysisTest extends ESTestCase {
         assertTokenStreamContents(tokenizer, new String[]{"công nghệ thông tin", "Việt", "Nam"});
     }
 
+    public void testVietnameseTokenizerOffsets() throws IOException {
+        final TestAnalysis analysis = createTestAnalysis();
+        final Tokenizer tokenizer = analysis.tokenizer.get("vi_tokenizer").create();
+        tokenizer.setReader(new StringReader("công  nghệ thông tin Việt Nam, Nam"));
+        assertTokenStreamContents(tokenizer,
+                new String[]{"công nghệ thông tin", "Việt", "Nam", "Nam"},
+                new int[]{0, 21, 26, 31},
+                new int[]{20, 25, 29, 34},
+                34);
+    }
+
+    public void testChunkedVietnameseTokenizer() throws IOException {
+        final TestAnalysis analysis = createTestAnalysis();
+        final Tokenizer tokenizer = analysis.tokenizer.get("chunked_tokenizer").create();
+        tokenizer.setReader(new StringReader("công nghệ thông tin Việt Nam.\ncông nghệ thông tin Việt Nam"));
+        assertTokenStreamContents(tokenizer,
+                new String[]{"công nghệ thông tin", "Việt", "Nam", "công nghệ thông tin", "Việt", "Nam"},
+                new int[]{0, 20, 25, 30, 50, 55},
+                new int[]{19, 24, 28, 49, 54, 58},
+                58);
+    }
+
+    public void testChunkedSurrogatePairs() throws IOException {
+        final VietnameseModelRegistry registry = new VietnameseModelRegistry();
+        final TaggedWordTokenizer taggedWordTokenizer = registry.preload(TaggedWordTokenizer.DEFAULT_MODEL);
+        // the window of the first chunk ends with a high surrogate, the pair
+        // is kept whole in the next chunk
+        Tokenizer tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.builder().chunkSize(2).build());
+        tokenizer.setReader(new StringReader("a\uD83D\uDE00b"));
+        assertTokenStreamContents(tokenizer, new String[]{"a", "\uD83D\uDE00", "b"}, new int[]{0, 1, 3}, new int[]{1, 3, 4}, 4);
+
+        tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.builder().chunkSize(5).build());
+        tokenizer.setReader(new StringReader("Việt\uD83D\uDE00 Nam"));
+        assertTokenStreamContents(tokenizer, new String[]{"Việt", "\uD83D\uDE00", "Nam"}, new int[]{0, 4, 7}, new int[]{4, 6, 10},
+                10);
+
+        // a chunk must be able to hold a surrogate pair
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> TokenizerOptions.builder().chunkSize(1));
+        assertThat(e.getMessage(), containsString("chunk_size must be between 2 and"));
+        e = expectThrows(IllegalArgumentException.class,
+                () -> TokenizerOptions.builder().chunkSize(VietnameseTokenizer.MAX_CHUNK_SIZE + 1));
+        assertThat(e.getMessage(), containsString("chunk_size must be between 2 and"));
+        registry.close();
+    }
+
+    public void testLongLineOffsets() throws IOException {
+        final TestAnalysis analysis = createTestAnalysis();
+        final String sentence = "công nghệ thông tin Việt Nam, ngày 12/10/2017 lúc 10:30 tại duydo@gmail.com  ";
+        final StringBuilder line = new StringBuilder("  ");
+        for (int i = 0; i < 1000; i++) {
+            line.append(sentence);
+        }
+        final List<String> expected = tokenizeWithOffsets(analysis, sentence);
+        final List<String> terms = tokenizeWithOffsets(analysis, line.toString());
+        assertThat(terms.size(), greaterThan(expected.size() * 900));
+        assertThat(terms.subList(0, expected.size()), equalTo(expected));
+    }
+
+    /**
+     * @return the terms of a text, checking that their offsets point to them.
+     */
+    private List<String> tokenizeWithOffsets(final TestAnalysis analysis, final String text) throws IOException {
+        final List<String> terms = new ArrayList<>();
+        try (Tokenizer tokenizer = analysis.tokenizer.get("vi_tokenizer").create()) {
+            tokenizer.setReader(new StringReader(text));
+            final CharTermAttribute term = tokenizer.addAttribute(CharTermAttribute.class);
+            final OffsetAttribute offset = tokenizer.addAttribute(OffsetAttribute.class);
+            tokenizer.reset();
+            while (tokenizer.incrementToken()) {
+                assertThat(text.substring(offset.startOffset(), offset.endOffset()), equalTo(term.toString()));
+                terms.add(term.toString());
+            }
+            tokenizer.end();
+        }
+        return terms;
+    }
+
+    public void testConcurrentVietnameseTokenizer() throws Exception {
+        final TestAnalysis analysis = createTestAnalysis();
+        final TokenizerFactory tokenizerFactory = analysis.tokenizer.get("vi_tokenizer");
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    latch.await();
+                    final Tokenizer tokenizer = tokenizerFactory.create();
+                    for (int j = 0; j < 50; j++) {
+                        tokenizer.setReader(new StringReader("công nghệ thông tin Việt Nam"));
+                        assertTokenStreamContents(tokenizer, new String[]{"công nghệ thông tin", "Việt", "Nam"});
+                    }
+                } catch (final Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            });
+            threads[i].start();
+        }
+        latch.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    public void testModelRegistry() {
+        final VietnameseModelRegistry registry = new VietnameseModelRegistry();
+        final Index index1 = new Index("test1", "_na_1");
+        final Index index2 = new Index("test2", "_na_2");
+        final TaggedWordTokenizer tokenizer1 = registry.acquire(index1, TaggedWordTokenizer.DEFAULT_MODEL);
+        final TaggedWordTokenizer tokenizer2 = registry.acquire(index2, TaggedWordTokenizer.DEFAULT_MODEL);
+        assertSame(tokenizer1, tokenizer2);
+        assertEquals(1, registry.size());
+        registry.release(index1);
+        assertEquals(1, registry.size());
+        registry.release(index2);
+        assertEquals(0, registry.size());
+
+        // one reference per index, released once all its services are removed
+        registry.retain(index1);
+        registry.retain(index1);
+        registry.acquire(index1, TaggedWordTokenizer.DEFAULT_MODEL);
+        registry.acquire(index1, TaggedWordTokenizer.DEFAULT_MODEL);
+        registry.release(index1);
+        assertEquals(1, registry.size());
+        registry.release(index1);
+        assertEquals(0, registry.size());
+
+        // the vi_analyzer of each index service retains the references until
+        // the service closes its analyzers, even a service firing no index
+        // event such as the one verifying the metadata of the index
+        final Settings settings = Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexMetaData.SETTING_INDEX_UUID, index1.getUUID()).build();
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings(index1, settings,
+                VietnameseSlowLog.SETTINGS.toArray(new Setting<?>[0]));
+        assertEquals(index1, indexSettings.getIndex());
+        final Environment environment = new Environment(Settings.builder().put(Environment.PATH_HOME_SETTING.getKey(), createTempDir())
+                .build());
+        final VietnameseAnalyzerProvider live = new VietnameseAnalyzerProvider(indexSettings, environment, "vi_analyzer",
+                Settings.EMPTY, registry);
+        final VietnameseAnalyzerProvider verifying = new VietnameseAnalyzerProvider(indexSettings, environment, "vi_analyzer",
+                Settings.EMPTY, registry);
+        verifying.get().close();
+        verifying.get().close();
+        assertEquals(1, registry.size());
+        live.get().close();
+        assertEquals(0, registry.size());
+
+        // the components of requests without an index are not counted
+        final Index requestIndex = new Index("_na_", IndexMetaData.INDEX_UUID_NA_VALUE);
+        for (int i = 0; i < 10; i++) {
+            registry.acquire(requestIndex, TaggedWordTokenizer.DEFAULT_MODEL);
+        }
+        registry.acquire(index1, TaggedWordTokenizer.DEFAULT_MODEL);
+        registry.release(index1);
+        registry.release(requestIndex);
+        assertEquals(1, registry.size());
+        registry.close();
+    }
+
+    public void testPreload() {
+        final VietnameseModelRegistry registry = new VietnameseModelRegistry();
+        final TaggedWordTokenizer preloaded = registry.preload(TaggedWordTokenizer.DEFAULT_MODEL);
+        assertNotNull(preloaded);
+        assertEquals(1, registry.size());
+
+        final Index index = new Index("test", "_na_");
+        assertSame(preloaded, registry.acquire(index, TaggedWordTokenizer.DEFAULT_MODEL));
+        registry.release(index);
+        assertEquals(1, registry.size());
+
+        registry.close();
+        assertEquals(0, registry.size());
+        assertNull(registry.preload(TaggedWordTokenizer.DEFAULT_MODEL));
+    }
+
+    public void testUserDictionary() throws IOException {
+        final Path file = createTempDir().resolve("user_dictionary.txt");
+        Files.write(file, Arrays.asList("# user words", "abc  xyz", "Thủy abc"), StandardCharsets.UTF_8);
+        final VietnameseUserDictionary userDictionary = new VietnameseUserDictionary(file);
+        final VietnameseModelRegistry registry = new VietnameseModelRegistry(Settings.EMPTY, userDictionary);
+        final TaggedWordTokenizer taggedWordTokenizer = registry.acquire(new Index("test", "_na_"), TaggedWordTokenizer.DEFAULT_MODEL);
+
+        Tokenizer tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.DEFAULT);
+        tokenizer.setReader(new StringReader("abc xyz"));
+        assertTokenStreamContents(tokenizer, new String[]{"abc xyz"});
+
+        // the accents of the words are moved as those of the phrases, thủy to thuỷ
+        tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.DEFAULT);
+        tokenizer.setReader(new StringReader("thủy abc"));
+        assertTokenStreamContents(tokenizer, new String[]{"thủy abc"});
+
+        Files.write(file, Arrays.asList("# no words"), StandardCharsets.UTF_8);
+        userDictionary.reload();
+        tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.DEFAULT);
+        tokenizer.setReader(new StringReader("abc xyz"));
+        assertTokenStreamContents(tokenizer, new String[]{"abc", "xyz"});
+        registry.close();
+    }
+
+    public void testUserWords() throws IOException {
+        final TestAnalysis analysis = createTestAnalysis();
+        Tokenizer tokenizer = analysis.tokenizer.get("overlay_tokenizer").create();
+        tokenizer.setReader(new StringReader("abc xyz công nghệ"));
+        assertTokenStreamContents(tokenizer, new String[]{"abc xyz", "công nghệ"});
+
+        // the user words are normalized as the phrases, hòa to hoà
+        tokenizer = analysis.tokenizer.get("overlay_tokenizer").create();
+        tokenizer.setReader(new StringReader("hòa xyz"));
+        assertTokenStreamContents(tokenizer, new String[]{"hòa xyz"});
+
+        tokenizer = analysis.tokenizer.get("vi_tokenizer").create();
+        tokenizer.setReader(new StringReader("abc xyz công nghệ"));
+        assertTokenStreamContents(tokenizer, new String[]{"abc", "xyz", "công nghệ"});
+    }
+
+    public void testSegmentationCache() throws IOException {
+        final VietnameseModelRegistry registry = new VietnameseModelRegistry();
+        final TaggedWordTokenizer taggedWordTokenizer = registry.acquire(new Index("test", "_na_"), TaggedWordTokenizer.DEFAULT_MODEL);
+        final SegmentationCache segmentationCache = taggedWordTokenizer.getSegmentationCache();
+        assertNotNull(segmentationCache);
+
+        Tokenizer tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.DEFAULT);
+        tokenizer.setReader(new StringReader("công nghệ thông tin Việt Nam"));
+        assertTokenStreamContents(tokenizer, new String[]{"công nghệ thông tin", "Việt", "Nam"});
+        assertEquals(0, segmentationCache.stats().getHits());
+        assertEquals(1, segmentationCache.count());
+
+        tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.DEFAULT);
+        tokenizer.setReader(new StringReader("công  nghệ thông tin Việt Nam"));
+        assertTokenStreamContents(tokenizer, new String[]{"công nghệ thông tin", "Việt", "Nam"}, new int[]{0, 21, 26},
+                new int[]{20, 25, 29});
+        assertEquals(1, segmentationCache.stats().getHits());
+        assertTrue(segmentationCache.ramBytesUsed() > 0);
+
+        segmentationCache.clear();
+        assertEquals(0, segmentationCache.count());
+        assertEquals(0, segmentationCache.ramBytesUsed());
+        registry.close();
+    }
+
+    public void testSegmentationCacheBreaker() {
+        final CircuitBreaker breaker = new MemoryCircuitBreaker(new ByteSizeValue(1024), 1.0, logger);
+        final SegmentationCache segmentationCache = SegmentationCache.build(Settings.EMPTY, breaker);
+        segmentationCache.put("công nghệ", null, new String[]{"công nghệ"});
+        assertEquals(1, segmentationCache.count());
+        assertEquals(segmentationCache.ramBytesUsed(), breaker.getUsed());
+
+        final String[] words = new String[64];
+        Arrays.fill(words, "công nghệ");
+        segmentationCache.put("công nghệ thông tin", null, words);
+        assertEquals(1, segmentationCache.count());
+        assertEquals(1, segmentationCache.rejections());
+
+        segmentationCache.clear();
+        assertEquals(0, breaker.getUsed());
+    }
+
+    public void testSlowLog() throws Exception {
+        final Settings settings = Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT).build();
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings(new Index("test", "_na_"), settings,
+                VietnameseSlowLog.SETTINGS.toArray(new Setting<?>[0]));
+        final VietnameseSlowLog slowLog = new VietnameseSlowLog(indexSettings);
+        assertFalse(slowLog.isEnabled());
+
+        indexSettings.updateIndexMetaData(IndexMetaData.builder("test")
+                .settings(Settings.builder().put(settings).put(VietnameseSlowLog.THRESHOLD_WARN_SETTING.getKey(), "0ms")
+                        .put(VietnameseSlowLog.PHRASE_MAX_LENGTH_SETTING.getKey(), 9))
+                .numberOfShards(1).numberOfReplicas(0).build());
+        assertTrue(slowLog.isEnabled());
+
+        final Logger slowLogger = Loggers.getLogger(VietnameseSlowLog.SLOWLOG_PREFIX + ".tokenizer");
+        final MockLogAppender appender = new MockLogAppender();
+        appender.start();
+        appender.addExpectation(new MockLogAppender.PatternSeenEventExcpectation("slow document", slowLogger.getName(), Level.WARN,
+                "\\[test\\] took\\[.*\\], length\\[28\\], tokens\\[3\\], .*, phrases\\[1\\], .*"
+                        + "slowest_phrase_syllables\\[6\\], .*, slowest_phrase\\[công nghệ\\.\\.\\.\\]"));
+        final VietnameseModelRegistry registry = new VietnameseModelRegistry();
+        Loggers.addAppender(slowLogger, appender);
+        try {
+            final TaggedWordTokenizer taggedWordTokenizer = registry.acquire(indexSettings.getIndex(), TaggedWordTokenizer.DEFAULT_MODEL);
+            final Tokenizer tokenizer = new VietnameseTokenizer(taggedWordTokenizer, TokenizerOptions.builder().slowLog(slowLog).build());
+            tokenizer.setReader(new StringReader("công nghệ thông tin Việt Nam"));
+            assertTokenStreamContents(tokenizer, new String[]{"công nghệ thông tin", "Việt", "Nam"});
+            appender.assertAllExpectationsMatched();
+        } finally {
+            Loggers.removeAppender(slowLogger, appender);
+            appender.stop();
+            registry.close();
+        }
+    }
+
+    public void testExplain() throws IOException {
+        final TestAnalysis analysis = createTestAnalysis();
+        final Tokenizer tokenizer = analysis.tokenizer.get("explain_tokenizer").create();
+        final SegmentationAttribute segmentationAtt = tokenizer.addAttribute(SegmentationAttribute.class);
+        final CharTermAttribute termAtt = tokenizer.addAttribute(CharTermAttribute.class);
+        tokenizer.setReader(new StringReader("công nghệ thông tin Việt Nam"));
+        tokenizer.reset();
+
+        assertTrue(tokenizer.incrementToken());
+        assertEquals("công nghệ thông tin", termAtt.toString());
+        final SegmentationExplanation explanation = segmentationAtt.getExplanation();
+        assertNotNull(explanation);
+        assertEquals("công nghệ thông tin Việt Nam", explanation.getPhrase());
+        assertEquals(0, explanation.getStartOffset());
+        assertFalse(explanation.getPaths().isEmpty());
+        assertEquals(Arrays.asList("công nghệ thông tin", "Việt", "Nam"),
+                Arrays.asList(explanation.getPaths().get(explanation.getChoice())));
+        final Map<String, Object> map = explanation.toMap();
+        assertFalse(((List<?>) map.get("edges")).isEmpty());
+        assertTrue(map.containsKey("graph_nanos"));
+
+        assertTrue(tokenizer.incrementToken());
+        assertNull(segmentationAtt.getExplanation());
+        assertTrue(tokenizer.incrementToken());
+        assertFalse(tokenizer.incrementToken());
+        tokenizer.end();
+        tokenizer.close();
+    }
+
+    public void testFastMode() throws IOException {
+        final TestAnalysis analysis = createTestAnalysis();
+        final Tokenizer tokenizer = analysis.tokenizer.get("fast_tokenizer").create();
+        tokenizer.setReader(new StringReader("công  nghệ thông tin Việt Nam, abc xyz"));
+        assertTokenStreamContents(tokenizer,
+                new String[]{"công nghệ thông tin", "Việt", "Nam", "abc xyz"},
+                new int[]{0, 21, 26, 31},
+                new int[]{20, 25, 29, 38},
+                38);
+
+        final IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> SegmentationMode.parse("greedy"));
+        assertThat(e.getMessage(), containsString("Unknown segmentation mode [greedy]"));
+    }
+
+    public void testHybridMode() {
+        final VietnameseModelRegistry registry = new VietnameseModelRegistry();
+        final TaggedWordTokenizer taggedWordTokenizer = registry.acquire(new Index("test", "_na_"), TaggedWordTokenizer.DEFAULT_MODEL);
+        final TokenizerMetrics metrics = taggedWordTokenizer.getMetrics();
+
+        // forward and backward maximum matching agree
+        assertEquals(Arrays.asList("công nghệ thông tin", "Việt", "Nam"),
+                words(taggedWordTokenizer, "công nghệ thông tin Việt Nam", SegmentationMode.HYBRID));
+        assertEquals(1, metrics.getHybridPhrases());
+        assertEquals(0, metrics.getFallbackSpans());
+
+        // they disagree, the phrase is segmented on its lattice
+        final String ambiguous = "học sinh học sinh học";
+        assertEquals(words(taggedWordTokenizer, ambiguous, SegmentationMode.ACCURATE),
+                words(taggedWordTokenizer, ambiguous, SegmentationMode.HYBRID));
+        assertEquals(2, metrics.getHybridPhrases());
+        assertEquals(1, metrics.getFallbackSpans());
+        assertEquals(5, metrics.getFallbackSyllables());
+        registry.close();
+    }
+
+    public void testSegmentationBudget() {
+        final VietnameseModelRegistry registry = new VietnameseModelRegistry();
+        final TaggedWordTokenizer taggedWordTokenizer = registry.acquire(new Index("test", "_na_"), TaggedWordTokenizer.DEFAULT_MODEL);
+        final TokenizerMetrics metrics = taggedWordTokenizer.getMetrics();
+        final String text = "công nghệ thông tin Việt Nam";
+        final String ambiguous = "học sinh học sinh học";
+
+        // the enumeration of the shortest paths stops at the budget, the
+        // truncated result is not cached
+        SegmentationBudget.Deadline deadline = SegmentationBudget.parse(Settings.builder().put("max_segmentations", 1).build()).start();
+        final List<String> capped = words(taggedWordTokenizer, ambiguous, SegmentationMode.ACCURATE, deadline);
+        assertThat(capped, anyOf(equalTo(Arrays.asList("học sinh", "học sinh", "học")),
+                equalTo(Arrays.asList("học", "sinh học", "sinh học"))));
+        assertEquals(1, metrics.getCappedPhrases());
+        // as are those of the spans of the hybrid mode
+        assertEquals(capped, words(taggedWordTokenizer, ambiguous, SegmentationMode.HYBRID, deadline));
+        assertEquals(2, metrics.getCappedPhrases());
+        assertEquals(0, taggedWordTokenizer.getSegmentationCache().count());
+
+        // a phrase with as many segmentations as the budget is not truncated
+        deadline = SegmentationBudget.parse(Settings.builder().put("max_segmentations", 3).build()).start();
+        final List<String> exact = words(taggedWordTokenizer, ambiguous, SegmentationMode.ACCURATE, deadline);
+        assertEquals(2, metrics.getCappedPhrases());
+        assertEquals(1, taggedWordTokenizer.getSegmentationCache().count());
+        assertEquals(words(taggedWordTokenizer, ambiguous, SegmentationMode.ACCURATE, null), exact);
+        taggedWordTokenizer.getSegmentationCache().clear();
+        words(taggedWordTokenizer, ambiguous, SegmentationMode.HYBRID, deadline);
+        assertEquals(2, metrics.getCappedPhrases());
+
+        // a phrase longer than the budget is segmented greedily
+        deadline = SegmentationBudget.parse(Settings.builder().put("max_phrase_syllables", 5).build()).start();
+        assertEquals(words(taggedWordTokenizer, text, SegmentationMode.FAST, null),
+                words(taggedWordTokenizer, text, SegmentationMode.ACCURATE, deadline));
+        assertEquals(1, metrics.getLongPhrases());
+        assertEquals(words(taggedWordTokenizer, ambiguous, SegmentationMode.ACCURATE, null),
+                words(taggedWordTokenizer, ambiguous, SegmentationMode.ACCURATE, deadline));
+        assertEquals(1, metrics.getLongPhrases());
+
+        // once the time budget is spent, the phrases are segmented greedily
+        // until the next document
+        deadline = SegmentationBudget.parse(Settings.builder().put("time_budget", "0ms").build()).start();
+        assertEquals(words(taggedWordTokenizer, text, SegmentationMode.FAST, null),
+                words(taggedWordTokenizer, text, SegmentationMode.GRAPH, deadline));
+        assertEquals(1, metrics.getLatePhrases());
+        assertTrue(deadline.isExpired());
+
+        assertSame(SegmentationBudget.UNLIMITED, SegmentationBudget.parse(Settings.EMPTY));
+        final IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+                () -> SegmentationBudget.parse(Settings.builder().put("max_segmentations", 0).build()));
+        assertThat(e.getMessage(), containsString("max_segmentations must be positive or -1"));
+        registry.close();
+    }
+
+    private static List<String> words(final TaggedWordTokenizer taggedWordTokenizer, final String text, final SegmentationMode mode) {
+        return words(taggedWordTokenizer, text, mode, null);
+    }
+
+    private static List<String> words(final TaggedWordTokenizer taggedWordTokenizer, final String text, final SegmentationMode mode,
+            final SegmentationBudget.Deadline deadline) {
+        final List<String> words = new ArrayList<>();
+        for (final TaggedWord word : taggedWordTokenizer.tokenize(text, 0, TokenizerOptions.builder().mode(mode).build(), deadline, null)) {
+            words.add(word.getText());
+        }
+        return words;
+    }
+
+    public void testGraphMode() throws IOException {
+        final TestAnalysis analysis = createTestAnalysis();
+        final Tokenizer tokenizer = analysis.tokenizer.get("graph_tokenizer").create();
+        tokenizer.setReader(new StringReader("học sinh học sinh học. Việt Nam"));
+        // the shortest paths are "học sinh|học sinh|học" and "học|sinh học|sinh học"
+        assertTokenStreamContents(tokenizer,
+                new String[]{"học sinh", "học", "sinh học", "học sinh", "học", "sinh học", "học", "Việt", "Nam"},
+                new int[]{0, 0, 4, 9, 9, 13, 18, 23, 28},
+                new int[]{8, 3, 12, 17, 12, 21, 21, 27, 31},
+                null,
+                new int[]{1, 0, 1, 1, 0, 1, 1, 1, 1},
+                new int[]{2, 1, 2, 2, 1, 2, 1, 1, 1},
+                31);
+    }
+
+    public void testFoldingFilter() throws IOException {
+        final TestAnalysis analysis = createTestAnalysis();
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        // "Tiếng" is decomposed, its diacritics are combining marks
+        tokenizer.setReader(new StringReader("Tie\u0302\u0301ng Việt ở Đà Nẵng, abc"));
+        assertTokenStreamContents(analysis.tokenFilter.get("vi_folding").create(tokenizer),
+                new String[]{"Tieng", "Viet", "o", "Da", "Nang,", "abc"});
+
+        tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader("Việt Nam đường"));
+        assertTokenStreamContents(analysis.tokenFilter.get("folding_original").create(tokenizer),
+                new String[]{"Viet", "Việt", "Nam", "duong", "đường"},
+                new int[]{0, 0, 5, 9, 9},
+                new int[]{4, 4, 8, 14, 14},
+                new int[]{1, 0, 1, 1, 0});
+    }
+
+    public void testNormalizeCharFilter() throws IOException {
+        final TestAnalysis analysis = createTestAnalysis();
+        // decomposed letters, in any order, and a misplaced tone mark
+        Tokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(analysis.charFilter.get("vi_normalize")
+                .create(new StringReader("Tie\u0302\u0301ng Vie\u0323\u0302t hòa ho\u0300a q\u0301")));
+        assertTokenStreamContents(tokenizer,
+                new String[]{"Tiếng", "Việt", "hoà", "hoà", "q\u0301"},
+                new int[]{0, 8, 15, 19, 24},
+                new int[]{7, 14, 18, 23, 26},
+                26);
+
+        tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(analysis.charFilter.get("vni_normalize").create(new StringReader("Vieät Nam ñöôïc ÑAØ NAÜNG")));
+        assertTokenStreamContents(tokenizer,
+                new String[]{"Việt", "Nam", "được", "ĐÀ", "NẴNG"},
+                new int[]{0, 6, 10, 16, 20},
+                new int[]{5, 9, 15, 19, 25},
+                25);
+
+        tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(analysis.charFilter.get("tcvn3_normalize").create(new StringReader("TiÕng ViÖt ®\u00b8nh")));
+        assertTokenStreamContents(tokenizer,
+                new String[]{"Tiếng", "Việt", "đánh"},
+                new int[]{0, 6, 11},
+                new int[]{5, 10, 15},
+                15);
+
+        final IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+                () -> VietnameseNormalizeCharFilter.LegacyEncoding.parse("utf-16"));
+        assertThat(e.getMessage(), containsString("Unknown legacy encoding [utf-16]"));
+    }
+
+    public void testLexer() throws IOException {
+        final Lexer lexer = new VietnameseModelRegistry().preload(TaggedWordTokenizer.DEFAULT_MODEL).getLexer();
+        // the candidate rules selected by the first character only
+        final Lexer dispatchLexer = new Lexer(Arrays.asList(lexer.getRules()), 0);
+        final List<String> digitRules = new ArrayList<>();
+        for (final LexerRule rule : lexer.getCandidateRules('1')) {
+            digitRules.add(rule.getName());
+        }
+        assertThat(digitRules, hasItems("date:dd-mm-yyyy", "hour", "number", "percentage"));
+        assertThat(digitRules, not(hasItems("phrase")));
+        assertThat(digitRules, not(hasItems("allcaps")));
+        final List<String> lines = new ArrayList<>(Arrays.asList("", " ", "12/10/2017", "12-10-2017 lúc 10:30", "10.000.000 đồng",
+                "3,5% và 1/2", "nhiệt độ 37°C", "duydo@gmail.com,", "http://www.google.com.vn/search?q=a", "https",
+                "CNTT và WTO", "E-mail: abc.xyz@yahoo.com", "(School@net)", "Đà Nẵng... ?!", "\uD83D\uDE00 \uD83D\uDE00abc"));
+        try (InputStream in = VietnameseAnalysisTest.class.getResourceAsStream(VietnameseModelLoader.DEFAULT_WARMUP_CORPUS)) {
+            lines.addAll(IOUtils.readLines(in, StandardCharsets.UTF_8.name()).subList(0, 200));
+        }
+        for (final Lexer.Scanner scanner : Arrays.asList(lexer.newScanner(), dispatchLexer.newScanner())) {
+            assertLexer(lexer, scanner, lines);
+        }
+    }
+
+    public void testLexerStats() throws IOException {
+        final Lexer lexer = new Lexer(Arrays.asList(
+                new VietnameseModelRegistry().preload(TaggedWordTokenizer.DEFAULT_MODEL).getLexer().getRules()));
+        final Lexer.Scanner scanner = lexer.newScanner();
+        assertNull(lexer.getStats());
+        lexer.setStatsEnabled(true);
+        final LexerStats stats = lexer.getStats();
+        assertNotNull(stats);
+        final String text = "ngày 12/10/2017";
+        scanner.reset(text);
+        assertTrue(scanner.lookingAt(0, text.length()));
+        assertTrue(scanner.lookingAt(5, text.length()));
+        long attempts = 0;
+        for (int i = 0; i < stats.getRules().length; i++) {
+            attempts += stats.getAttempts(i);
+            assertThat(stats.getMatches(i), lessThanOrEqualTo(stats.getAttempts(i)));
+            final String name = stats.getRules()[i].getName();
+            if (name.equals("phrase") || name.equals("date:dd-mm-yyyy")) {
+                assertThat(name, stats.getWins(i), equalTo(1L));
+            } else {
+                assertThat(name, stats.getWins(i), equalTo(0L));
+            }
+        }
+        // the rules which cannot start with a digit are not attempted
+        assertThat(attempts, lessThan(2L * stats.getRules().length));
+        assertThat(stats.getNeverWon(), hasItems("email", "url"));
+        assertThat(stats.report(), containsString("never wins"));
+
+        lexer.setStatsEnabled(false);
+        assertNull(lexer.getStats());
+        assertTrue(scanner.lookingAt(0, text.length()));
+        assertThat(stats.getWins(0), equalTo(1L));
+
+        // the lexer of a standalone tokenizer, shared or its own
+        final Properties properties = TaggedWordTokenizer.loadProperties(TaggedWordTokenizer.DEFAULT_MODEL);
+        final org.codelibs.elasticsearch.vi.nlp.tokenizer.Tokenizer[] tokenizers = AccessController.doPrivileged(
+                (PrivilegedAction<org.codelibs.elasticsearch.vi.nlp.tokenizer.Tokenizer[]>) () -> {
+                    final Segmenter segmenter = new Segmenter(properties, new UnigramResolver(properties.getProperty("unigramModel")));
+                    return new org.codelibs.elasticsearch.vi.nlp.tokenizer.Tokenizer[]{
+                            new org.codelibs.elasticsearch.vi.nlp.tokenizer.Tokenizer(properties, lexer, segmenter),
+                            new org.codelibs.elasticsearch.vi.nlp.tokenizer.Tokenizer(properties, segmenter)};
+                });
+        assertSame(lexer, tokenizers[0].getLexer());
+        final org.codelibs.elasticsearch.vi.nlp.tokenizer.Tokenizer tokenizer = tokenizers[1];
+        assertNull(tokenizer.getLexer().getStats());
+        tokenizer.getLexer().setStatsEnabled(true);
+        tokenizer.tokenize(new StringReader(text));
+        final LexerStats tokenizerStats = tokenizer.getLexer().getStats();
+        long wins = 0;
+        for (int i = 0; i < tokenizerStats.getRules().length; i++) {
+            wins += tokenizerStats.getWins(i);
+            if (tokenizerStats.getRules()[i].getName().equals("date:dd-mm-yyyy")) {
+                assertThat(tokenizerStats.getWins(i), equalTo(1L));
+            }
+        }
+        assertThat(wins, greaterThan(1L));
+    }
+
+    private void assertLexer(final Lexer lexer, final Lexer.Scanner scanner, final List<String> lines) {
+        for (final String line : lines) {
+            scanner.reset(line);
+            for (int start = 0; start <= line.length(); start++) {
+                // the longest match of the rules tried one by one
+                LexerRule expectedRule = null;
+                int expectedEnd = -1;
+                for (final LexerRule rule : lexer.getRules()) {
+                    final Matcher matcher = rule.getPattern().matcher(line).region(start, line.length());
+                    if (matcher.lookingAt() && matcher.end() > expectedEnd) {
+                        expectedEnd = matcher.end();
+                        expectedRule = rule;
+                    }
+                }
+                final String message = "[" + line.substring(start) + "]";
+                assertThat(message, scanner.lookingAt(start, line.length()), equalTo(expectedRule != null));
+                assertThat(message, scanner.rule(), equalTo(expectedRule));
+                assertThat(message, scanner.end(), equalTo(expectedEnd));
+            }
+        }
+    }
+
     public void testVietnameseAnalyzer() throws IOException {
         final TestAnalysis analysis = createTestAnalysis();
         final NamedAnalyzer analyzer = analysis.indexAnalyzers.get("vi_analyzer");
@@ -0,0 +1,271 @@
+package org.codelibs.elasticsearch.vi.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.codelibs.elasticsearch.vi.nlp.tokenizer.LexerStats;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * Indexing throughput of {@link VietnameseAnalyzer}: the documents of a corpus
+ * are analyzed and indexed by a Lucene {@link IndexWriter} shared by several
+ * threads, and the documents, bytes and tokens per second are reported with
+ * the time spent in garbage collection and the allocation rate of the
+ * indexing threads.
+ * <p>
+ * The corpus is built from the bundled <tt>training-vn.txt</tt>, a document
+ * being a group of consecutive lines, repeated as many times as asked. It is
+ * not a test and is not run by the build; run it from the test class path:
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -Xmx1g -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.codelibs.elasticsearch.vi.analysis.VietnameseAnalyzerBenchmark threads=4 repeat=5
+ * </pre>
+ *
+ * The arguments are <tt>name=value</tt> pairs:
+ * <ul>
+ * <li><tt>threads</tt>: the number of indexing threads, <tt>1</tt> by default</li>
+ * <li><tt>lines</tt>: the number of lines of a document, <tt>10</tt> by default</li>
+ * <li><tt>repeat</tt>: how many times the corpus is indexed in a run, <tt>1</tt> by default</li>
+ * <li><tt>warmup</tt>: the number of runs before the measured ones, <tt>1</tt> by default</li>
+ * <li><tt>runs</tt>: the number of measured runs, <tt>3</tt> by default</li>
+ * <li><tt>directory</tt>: <tt>ram</tt> (default) or <tt>fs</tt> for a temporary directory</li>
+ * <li><tt>cache_entries</tt>: the size of the segmentation cache, <tt>0</tt> (disabled) by default so
+ * that the repeated corpus is segmented again</li>
+ * <li><tt>lexer_stats</tt>: <tt>true</tt> to print the work of each lexer rule over all the runs, flagging the
+ * rules which never win on the corpus, <tt>false</tt> by default</li>
+ * </ul>
+ */
+public class VietnameseAnalyzerBenchmark {
+
+    private static final String FIELD = "body";
+
+    private final int threads;
+
+    private final boolean ramDirectory;
+
+    private final List<String> documents;
+
+    private final long bytes;
+
+    private final TaggedWordTokenizer taggedWordTokenizer;
+
+    private final VietnameseAnalyzer analyzer;
+
+    private final TokenizerMetrics metrics = new TokenizerMetrics();
+
+    VietnameseAnalyzerBenchmark(final Map<String, String> options) throws IOException {
+        threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+        ramDirectory = "ram".equals(options.getOrDefault("directory", "ram"));
+        documents = buildCorpus(Integer.parseInt(options.getOrDefault("lines", "10")),
+                Integer.parseInt(options.getOrDefault("repeat", "1")));
+        long size = 0;
+        for (final String document : documents) {
+            size += document.getBytes(StandardCharsets.UTF_8).length;
+        }
+        bytes = size;
+        final Settings settings = Settings.builder()
+                .put(SegmentationCache.MAX_ENTRIES_SETTING.getKey(), options.getOrDefault("cache_entries", "0")).build();
+        taggedWordTokenizer = new TaggedWordTokenizer(
+                TaggedWordTokenizer.loadProperties(TaggedWordTokenizer.DEFAULT_MODEL), null,
+                SegmentationCache.build(settings, new NoopCircuitBreaker(VietnameseBreakerService.BREAKER_NAME)), metrics);
+        taggedWordTokenizer.getLexer().setStatsEnabled(Boolean.parseBoolean(options.getOrDefault("lexer_stats", "false")));
+        analyzer = new VietnameseAnalyzer(VietnameseAnalyzer.getDefaultStopSet(), taggedWordTokenizer);
+    }
+
+    /**
+     * @return the documents of the corpus, made of <tt>lines</tt> lines of
+     *         the training corpus, the whole corpus being repeated
+     *         <tt>repeat</tt> times.
+     */
+    private static List<String> buildCorpus(final int lines, final int repeat) throws IOException {
+        final List<String> corpusLines;
+        try (InputStream in = VietnameseAnalyzerBenchmark.class.getResourceAsStream(VietnameseModelLoader.DEFAULT_WARMUP_CORPUS)) {
+            corpusLines = IOUtils.readLines(in, StandardCharsets.UTF_8.name());
+        }
+        final List<String> documents = new ArrayList<>();
+        final StringBuilder document = new StringBuilder();
+        for (int r = 0; r < repeat; r++) {
+            for (int i = 0; i < corpusLines.size(); i += lines) {
+                document.setLength(0);
+                for (int j = i; j < Math.min(i + lines, corpusLines.size()); j++) {
+                    document.append(corpusLines.get(j)).append('\n');
+                }
+                documents.add(document.toString());
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Indexes the corpus once into a new directory.
+     *
+     * @return the result of the run
+     */
+    Result run() throws Exception {
+        final Path path = ramDirectory ? null : Files.createTempDirectory("vi-benchmark");
+        try (Directory directory = ramDirectory ? new RAMDirectory() : FSDirectory.open(path)) {
+            final IndexWriterConfig config = new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+            final long tokens = metrics.getTokens();
+            final long gcMillis = gcMillis();
+            final AtomicLong allocatedBytes = new AtomicLong();
+            final AtomicInteger next = new AtomicInteger();
+            final List<Throwable> failures = new ArrayList<>();
+            final long startTime = System.nanoTime();
+            try (IndexWriter writer = new IndexWriter(directory, config)) {
+                final Thread[] workers = new Thread[threads];
+                for (int t = 0; t < threads; t++) {
+                    workers[t] = new Thread(() -> {
+                        final long allocated = allocatedBytes();
+                        try {
+                            index(writer, next);
+                        } catch (final Throwable e) {
+                            synchronized (failures) {
+                                failures.add(e);
+                            }
+                        }
+                        // -1 if the allocations of any worker are not counted
+                        final long end = allocated < 0 ? -1L : allocatedBytes();
+                        allocatedBytes.accumulateAndGet(end < 0 ? -1L : end - allocated,
+                                (sum, bytes) -> sum < 0 || bytes < 0 ? -1L : sum + bytes);
+                    }, "vi-benchmark-" + t);
+                    workers[t].start();
+                }
+                for (final Thread worker : workers) {
+                    worker.join();
+                }
+                writer.commit();
+            }
+            final long nanos = System.nanoTime() - startTime;
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException("Indexing failed", failures.get(0));
+            }
+            return new Result(documents.size(), bytes, metrics.getTokens() - tokens, nanos, gcMillis() - gcMillis,
+                    allocatedBytes.get());
+        } finally {
+            if (path != null) {
+                org.apache.lucene.util.IOUtils.rm(path);
+            }
+        }
+    }
+
+    private void index(final IndexWriter writer, final AtomicInteger next) throws IOException {
+        final Document document = new Document();
+        final Field field = new TextField(FIELD, "", Field.Store.NO);
+        document.add(field);
+        int i;
+        while ((i = next.getAndIncrement()) < documents.size()) {
+            field.setStringValue(documents.get(i));
+            writer.addDocument(document);
+        }
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * @return the bytes allocated by the current thread, or <tt>-1</tt> if
+     *         the JVM does not count them.
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1L;
+    }
+
+    static final class Result {
+
+        final int documents;
+
+        final long bytes;
+
+        final long tokens;
+
+        final long nanos;
+
+        final long gcMillis;
+
+        final long allocatedBytes;
+
+        Result(final int documents, final long bytes, final long tokens, final long nanos, final long gcMillis,
+                final long allocatedBytes) {
+            this.documents = documents;
+            this.bytes = bytes;
+            this.tokens = tokens;
+            this.nanos = nanos;
+            this.gcMillis = gcMillis;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            final double seconds = nanos / 1e9;
+            return String.format(Locale.ROOT,
+                    "%d docs, %.1f MB, %d tokens in %.2f s: %.0f docs/s, %.2f MB/s, %.0f tokens/s, gc %d ms (%.1f%%), allocation %s",
+                    documents, bytes / 1e6, tokens, seconds, documents / seconds, bytes / 1e6 / seconds, tokens / seconds, gcMillis,
+                    gcMillis / 10.0 / seconds,
+                    allocatedBytes < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f MB/s", allocatedBytes / 1e6 / seconds));
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (final String arg : args) {
+            final int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        final int warmup = Integer.parseInt(options.getOrDefault("warmup", "1"));
+        final int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        final VietnameseAnalyzerBenchmark benchmark = new VietnameseAnalyzerBenchmark(options);
+        System.out.println(String.format(Locale.ROOT, "%d threads, %d documents, %.1f MB, %s directory", benchmark.threads,
+                benchmark.documents.size(), benchmark.bytes / 1e6, benchmark.ramDirectory ? "ram" : "fs"));
+        for (int i = 0; i < warmup; i++) {
+            System.out.println("warmup " + (i + 1) + ": " + benchmark.run());
+        }
+        for (int i = 0; i < runs; i++) {
+            System.out.println("run " + (i + 1) + ": " + benchmark.run());
+        }
+        final LexerStats lexerStats = benchmark.taggedWordTokenizer.getLexer().getStats();
+        if (lexerStats != null) {
+            System.out.print(lexerStats.report());
+        }
+        benchmark.analyzer.close();
+    }
+}